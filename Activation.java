@@ -0,0 +1,353 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file is the interface for the activation function of one layer of an N-layer Network, with the sigmoid,
+* hyperbolic tangent, ReLU, leaky ReLU and linear functions as nested implementations.
+* Besides the single-value f and derivOf, every implementation applies itself to a whole layer in forward and
+* backward. The network makes one interface call per layer and the loop inside runs on a single concrete class,
+* so the JIT can inline f instead of dispatching once per activation.
+* Derivatives are always taken from the cached activation f(x), never from x.
+*
+* ==== Methods ====
+* f(double)
+* derivOf(double)
+* forward(double[], double[])
+* backward(double[], double[])
+* forward(float[], float[])
+* backward(float[], float[])
+* forName(String, int)
+*/
+
+public interface Activation
+{
+/*
+* LEAKY_SLOPE - slope of the leaky ReLU for negative inputs
+*/
+   double LEAKY_SLOPE = 0.01;
+
+/*
+* f applies the activation function to a single input
+*
+* @param input a double value to be operated on
+* @return f(input)
+*/
+   double f(double input);
+
+/*
+* derivOf gives the derivative of the activation function from the activation itself
+*
+* @param activation f(x) for the x the derivative is wanted at
+* @return f'(x)
+*/
+   double derivOf(double activation);
+
+/*
+* forward sets a[j] = f(theta[j]) for every activation of the layer
+*/
+   void forward(double[] theta, double[] a);
+
+/*
+* backward multiplies every psi[k] (holding omega on entry) by f'(x) taken from a[k]
+*/
+   void backward(double[] a, double[] psi);
+
+/*
+* forward sets a[j] = f(theta[j]) for every activation of a single-precision layer
+*/
+   void forward(float[] theta, float[] a);
+
+/*
+* backward multiplies every psi[k] (holding omega on entry) by f'(x) taken from a[k], in single precision
+*/
+   void backward(float[] a, float[] psi);
+
+/*
+* forName creates the activation function named in the control file
+*
+* @param name sigmoid, tanh, relu, leakyrelu or linear
+* @param mode how sigmoid and tanh are evaluated: Nlayer.EXACT, Nlayer.TABLE or Nlayer.RATIONAL
+* @return the activation function
+*/
+   static Activation forName(String name, int mode)
+   {
+      if (name.equals("sigmoid"))
+      {
+         return new Sigmoid(mode);
+      }
+      else if (name.equals("tanh"))
+      {
+         return new Tanh(mode);
+      }
+      else if (name.equals("relu"))
+      {
+         return new Relu();
+      }
+      else if (name.equals("leakyrelu"))
+      {
+         return new LeakyRelu();
+      }
+      else if (name.equals("linear"))
+      {
+         return new Linear();
+      }
+      throw new IllegalArgumentException("Unknown activation function \"" + name + "\"");
+   } // static Activation forName(String name, int mode)
+
+/*
+* Sigmoid is 1 / (1 + e^-x), with f'(x) = f(x) * (1 - f(x))
+*/
+   final class Sigmoid implements Activation
+   {
+      final int mode;
+
+      Sigmoid(int mode)
+      {
+         this.mode = mode;
+      }
+
+      public double f(double input)
+      {
+         if (mode == Nlayer.TABLE)
+         {
+            return FastActivations.sigmoidTable(input);
+         }
+         else if (mode == Nlayer.RATIONAL)
+         {
+            return FastActivations.sigmoidRational(input);
+         }
+         return 1.0 / (1.0 + Math.exp(-input));
+      } // public double f(double input)
+
+      public double derivOf(double activation)
+      {
+         return activation * (1.0 - activation);
+      }
+
+      public void forward(double[] theta, double[] a)
+      {
+         for (int j = 0; j < a.length; j++)
+         {
+            a[j] = f(theta[j]);
+         }
+      }
+
+      public void backward(double[] a, double[] psi)
+      {
+         for (int k = 0; k < a.length; k++)
+         {
+            psi[k] *= a[k] * (1.0 - a[k]);
+         }
+      }
+
+      public void forward(float[] theta, float[] a)
+      {
+         for (int j = 0; j < a.length; j++)
+         {
+            a[j] = (float) f(theta[j]);
+         }
+      }
+
+      public void backward(float[] a, float[] psi)
+      {
+         for (int k = 0; k < a.length; k++)
+         {
+            psi[k] *= a[k] * (1.0f - a[k]);
+         }
+      }
+   } // final class Sigmoid implements Activation
+
+/*
+* Tanh is the hyperbolic tangent, with f'(x) = 1 - f(x) ^ 2
+*/
+   final class Tanh implements Activation
+   {
+      final int mode;
+
+      Tanh(int mode)
+      {
+         this.mode = mode;
+      }
+
+      public double f(double input)
+      {
+         if (mode == Nlayer.TABLE)
+         {
+            return FastActivations.tanhTable(input);
+         }
+         else if (mode == Nlayer.RATIONAL)
+         {
+            return FastActivations.tanhRational(input);
+         }
+         return Math.tanh(input);
+      } // public double f(double input)
+
+      public double derivOf(double activation)
+      {
+         return 1.0 - activation * activation;
+      }
+
+      public void forward(double[] theta, double[] a)
+      {
+         for (int j = 0; j < a.length; j++)
+         {
+            a[j] = f(theta[j]);
+         }
+      }
+
+      public void backward(double[] a, double[] psi)
+      {
+         for (int k = 0; k < a.length; k++)
+         {
+            psi[k] *= 1.0 - a[k] * a[k];
+         }
+      }
+
+      public void forward(float[] theta, float[] a)
+      {
+         for (int j = 0; j < a.length; j++)
+         {
+            a[j] = (float) f(theta[j]);
+         }
+      }
+
+      public void backward(float[] a, float[] psi)
+      {
+         for (int k = 0; k < a.length; k++)
+         {
+            psi[k] *= 1.0f - a[k] * a[k];
+         }
+      }
+   } // final class Tanh implements Activation
+
+/*
+* Relu is max(0, x), with f'(x) = 1 where f(x) > 0 and 0 elsewhere
+*/
+   final class Relu implements Activation
+   {
+      public double f(double input)
+      {
+         return (input > 0.0) ? input : 0.0;
+      }
+
+      public double derivOf(double activation)
+      {
+         return (activation > 0.0) ? 1.0 : 0.0;
+      }
+
+      public void forward(double[] theta, double[] a)
+      {
+         for (int j = 0; j < a.length; j++)
+         {
+            a[j] = (theta[j] > 0.0) ? theta[j] : 0.0;
+         }
+      }
+
+      public void backward(double[] a, double[] psi)
+      {
+         for (int k = 0; k < a.length; k++)
+         {
+            if (a[k] <= 0.0) psi[k] = 0.0;
+         }
+      }
+
+      public void forward(float[] theta, float[] a)
+      {
+         for (int j = 0; j < a.length; j++)
+         {
+            a[j] = (theta[j] > 0.0f) ? theta[j] : 0.0f;
+         }
+      }
+
+      public void backward(float[] a, float[] psi)
+      {
+         for (int k = 0; k < a.length; k++)
+         {
+            if (a[k] <= 0.0f) psi[k] = 0.0f;
+         }
+      }
+   } // final class Relu implements Activation
+
+/*
+* LeakyRelu is x for positive x and LEAKY_SLOPE * x otherwise; f(x) has the sign of x, so f'(x) follows from f(x)
+*/
+   final class LeakyRelu implements Activation
+   {
+      public double f(double input)
+      {
+         return (input > 0.0) ? input : LEAKY_SLOPE * input;
+      }
+
+      public double derivOf(double activation)
+      {
+         return (activation > 0.0) ? 1.0 : LEAKY_SLOPE;
+      }
+
+      public void forward(double[] theta, double[] a)
+      {
+         for (int j = 0; j < a.length; j++)
+         {
+            a[j] = (theta[j] > 0.0) ? theta[j] : LEAKY_SLOPE * theta[j];
+         }
+      }
+
+      public void backward(double[] a, double[] psi)
+      {
+         for (int k = 0; k < a.length; k++)
+         {
+            if (a[k] <= 0.0) psi[k] *= LEAKY_SLOPE;
+         }
+      }
+
+      public void forward(float[] theta, float[] a)
+      {
+         for (int j = 0; j < a.length; j++)
+         {
+            a[j] = (theta[j] > 0.0f) ? theta[j] : (float) LEAKY_SLOPE * theta[j];
+         }
+      }
+
+      public void backward(float[] a, float[] psi)
+      {
+         for (int k = 0; k < a.length; k++)
+         {
+            if (a[k] <= 0.0f) psi[k] *= (float) LEAKY_SLOPE;
+         }
+      }
+   } // final class LeakyRelu implements Activation
+
+/*
+* Linear is the identity, with f'(x) = 1
+*/
+   final class Linear implements Activation
+   {
+      public double f(double input)
+      {
+         return input;
+      }
+
+      public double derivOf(double activation)
+      {
+         return 1.0;
+      }
+
+      public void forward(double[] theta, double[] a)
+      {
+         System.arraycopy(theta, 0, a, 0, a.length);
+      }
+
+      public void backward(double[] a, double[] psi)
+      {
+      }
+
+      public void forward(float[] theta, float[] a)
+      {
+         System.arraycopy(theta, 0, a, 0, a.length);
+      }
+
+      public void backward(float[] a, float[] psi)
+      {
+      }
+   } // final class Linear implements Activation
+
+} // public interface Activation
@@ -0,0 +1,236 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file checks that training an N-layer Network in allocationFree mode allocates nothing once the JIT has
+* compiled the hot loops. For every layout and every variant of options below it trains a network on random cases,
+* and Nlayer measures the bytes the training thread allocated during each iteration of the second half of training
+* with the HotSpot ThreadMXBean. Any variant with an iteration that allocated is reported as a failure, and the
+* process exits with status 1, so the check can gate a build.
+* The variants in SPARSE_VARIANTS are trained on cases that are mostly zeros, so that they run through the sparse
+* first layer; the others are trained on cases with hardly any zeros, which run dense.
+* Each variant is first trained, untimed, for WARMUP iterations whatever the iterations asked for, so every path
+* of the variant has been compiled by C2 before the measured run starts. When C2 first compiles a method, the JVM
+* interns the string constants of its class on the thread that called it, which the counter would otherwise see
+* as a few bytes allocated by whichever iteration that happened in; how soon that happens depends on the layout.
+* Every variant is trained in a JVM of its own, started with the same options as this one, because what the JIT
+* compiles, and so whether escape analysis removes the Vector API's temporary objects, depends on the profile of
+* every variant run before it in the same JVM.
+*
+* Usage: java AllocationCheck [iterations] [layout ...]
+*        layouts are written with dashes, as for NlayerBenchmark; add --add-modules jdk.incubator.vector to the java
+*        command to include the Vector API kernels
+*
+* ==== Methods ====
+* network(int[], String[], int, boolean)
+* check(int[], String[], int, boolean)
+* fork(String, int, int)
+* main(String[])
+*/
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+public class AllocationCheck
+{
+/*
+* DEFAULT_LAYOUTS - layouts checked when none are given
+* ITERATIONS ----- training iterations of the measured run of each variant; its second half is measured
+* WARMUP --------- training iterations of the untimed run before it, enough for C2 on every layout checked
+* CASES ---------- training cases per variant
+* VARIANTS ------- optional control file lines of every variant checked on dense cases
+* SPARSE_VARIANTS  optional control file lines of every variant checked on mostly zero cases
+*/
+   static final String[] DEFAULT_LAYOUTS = {"2-5-5-3", "20-10-20-10-5", "784-32-16-10"};
+   static final int ITERATIONS = 20000;
+   static final int WARMUP = 20000;
+   static final int CASES = 8;
+   static final String[][] VARIANTS = {
+      {},
+      {"batch 0"},
+      {"batch 2", "optimizer adam"},
+      {"optimizer nesterov", "schedule cosine", "earlyStop 100000"},
+      {"activation table", "activations tanh"},
+      {"activation rational"},
+      {"activations relu"},
+      {"vector true"},
+      {"vector true", "batch 0", "optimizer rmsprop"},
+      {"errorPass fused"},
+      {"errorPass epoch"},
+      {"errorPass epoch", "batch 4"},
+      {"precision float"},
+      {"precision float", "batch 4"}
+   };
+   static final String[][] SPARSE_VARIANTS = {
+      {},
+      {"batch 0"},
+      {"errorPass fused"},
+      {"errorPass epoch", "batch 4"},
+      {"vector true"},
+      {"precision float"},
+      {"precision float", "batch 4"}
+   };
+
+/*
+* network sets up one variant for training in allocationFree mode, with random weights and cases
+*
+* @param N the activations per layer
+* @param options the optional control file lines of the variant
+* @param iterations the training iterations
+* @param sparse true for cases that are four fifths zeros, false for cases that are almost never zero
+* @return the network, ready to train
+*/
+   public static Nlayer network(int[] N, String[] options, int iterations, boolean sparse)
+   {
+      StringBuilder layout = new StringBuilder();
+      for (int n = 0; n < N.length; n++)
+      {
+         layout.append(N[n]).append(' ');
+      }
+
+      List<String> config = new ArrayList<String>(Arrays.asList(
+         String.valueOf(N.length),
+         layout.toString(),
+         "0",                                         // random weights
+         "unused",
+         "true",                                      // training
+         String.valueOf(CASES),
+         "unused",
+         "unused",
+         "-1.5 1.5 0.1 0 " + iterations,              // randMin, randMax, lambda, error, iterations
+         "false",
+         "unused",
+         "0",
+         "allocationFree true"));
+      config.addAll(Arrays.asList(options));
+
+      Nlayer p = new Nlayer();
+      p.loadConfigHelper(config.toArray(new String[config.size()]));
+      p.allocateMemoryTrain();
+      p.populateWeightsRandom();
+
+      Random rand = new Random(N.length * 31L + N[0]);
+      for (int c = 0; c < CASES; c++)
+      {
+         for (int k = 0; k < N[0]; k++)
+         {
+            if (sparse && rand.nextInt(5) != 0)
+            {
+               p.setInput(c, k, 0.0);
+            }
+            else
+            {
+               p.setInput(c, k, (1 + rand.nextInt(255)) / 255.0);
+            }
+         }
+         p.eOutputs[c][c % N[N.length - 1]] = 1.0;
+      }
+      p.buildSparseInputs();
+      return p;
+   } // public static Nlayer network(int[] N, String[] options, int iterations, boolean sparse)
+
+/*
+* check trains one variant in allocationFree mode for WARMUP iterations, then again for the given iterations, and
+* reports the most bytes an iteration of the second training allocated
+*
+* @param N the activations per layer
+* @param options the optional control file lines of the variant
+* @param iterations the training iterations of the measured run
+* @param sparse true to train on mostly zero cases
+* @return the most bytes allocated by an iteration in the second half of training, or -1 if it was not measured
+*/
+   public static long check(int[] N, String[] options, int iterations, boolean sparse)
+   {
+      Nlayer p = network(N, options, WARMUP, sparse);
+      try
+      {
+         p.train();                                   // untimed, so the JIT has compiled every path
+         p = network(N, options, iterations, sparse);
+         p.train();
+      }
+      catch (java.io.IOException e)
+      {
+         throw new java.io.UncheckedIOException(e); // nothing is written without a checkpoint or metrics file
+      }
+      return p.maxAllocated;
+   } // public static long check(int[] N, String[] options, int iterations, boolean sparse)
+
+/*
+* fork checks one variant in a new JVM, which runs main with --variant
+*
+* @param layout the dashed layout
+* @param variant the index of the variant in VARIANTS, or VARIANTS.length plus its index in SPARSE_VARIANTS
+* @param iterations the training iterations
+* @return what check returned in the new JVM
+*/
+   public static long fork(String layout, int variant, int iterations) throws IOException, InterruptedException
+   {
+      List<String> command = new ArrayList<String>();
+      command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+      command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+      command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), "AllocationCheck", "--variant",
+                                   String.valueOf(variant), String.valueOf(iterations), layout));
+
+      Process child = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+      String last = null;
+      BufferedReader br = new BufferedReader(new InputStreamReader(child.getInputStream()));
+      for (String line = br.readLine(); line != null; line = br.readLine())
+      {
+         last = line;                                 // the training results come first
+      }
+      br.close();
+
+      if (child.waitFor() != 0 || last == null)
+      {
+         throw new IllegalStateException("Checking " + layout + " variant " + variant + " failed");
+      }
+      return Long.parseLong(last.trim());
+   } // public static long fork(String layout, int variant, int iterations)
+
+/*
+* Main method to check every layout and variant, or with --variant, to check one variant and print the result
+*
+* @param args the iterations, then the layouts; or --variant, the variant, the iterations and one layout
+*/
+   public static void main(String[] args) throws IOException, InterruptedException
+   {
+      if (args.length == 4 && args[0].equals("--variant"))
+      {
+         int v = Integer.parseInt(args[1]);
+         boolean sparse = v >= VARIANTS.length;
+         long allocated = check(NlayerBenchmark.parseLayout(args[3]),
+                                sparse ? SPARSE_VARIANTS[v - VARIANTS.length] : VARIANTS[v],
+                                Integer.parseInt(args[2]), sparse);
+         System.out.println(allocated);
+         return;
+      }
+
+      int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : ITERATIONS;
+      String[] layouts = (args.length > 1) ? Arrays.copyOfRange(args, 1, args.length) : DEFAULT_LAYOUTS;
+      int failures = 0;
+
+      for (String layout : layouts)
+      {
+         for (int v = 0; v < VARIANTS.length + SPARSE_VARIANTS.length; v++)
+         {
+            boolean sparse = v >= VARIANTS.length;
+            String[] options = sparse ? SPARSE_VARIANTS[v - VARIANTS.length] : VARIANTS[v];
+            long allocated = fork(layout, v, iterations);
+            boolean ok = allocated == 0;
+            if (!ok) failures++;
+
+            System.out.printf("%-6s %-16s %-7s %-55s %s%n", ok ? "ok" : "FAIL", layout, sparse ? "sparse" : "dense",
+                              String.join(", ", options),
+                              (allocated < 0) ? "not measured" : String.format("%,d bytes", allocated));
+         }
+      } // for (String layout : layouts)
+
+      System.out.printf("%d failure(s)%n", failures);
+      if (failures > 0)
+      {
+         System.exit(1);
+      }
+   } // public static void main(String[] args) throws IOException, InterruptedException
+
+} // public class AllocationCheck
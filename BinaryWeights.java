@@ -0,0 +1,232 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file reads and writes the weights of an N-layer Network in a binary format.
+* The file starts with a header of little-endian ints: the MAGIC number, the format VERSION, the number of layers,
+* then the activations per layer. The weights follow as raw little-endian doubles, one connection layer after
+* another, each in the same row-major order as LayerWeights (and as the rows of the text weights file).
+* Loading maps the file with a FileChannel and copies each layer straight into its LayerWeights array,
+* so there is no parsing and no garbage per weight.
+* A pruned network can be saved with writeSparse as version SPARSE_VERSION instead: after the same header, each
+* connection layer is the int count of its nonzero weights, their positions in the row-major array as ints, then
+* their values as doubles, so the file shrinks with the weights pruned (12 bytes per weight kept instead of 8 per
+* weight). read loads either version.
+*
+* ==== Methods ====
+* isBinary(String)
+* read(String, int[], LayerWeights[])
+* write(String, int[], LayerWeights[])
+* write(FileChannel, int[], double[][])
+* length(int[])
+* writeSparse(String, int[], LayerWeights[])
+* writeHeader(FileChannel, int, int[])
+*/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+public class BinaryWeights
+{
+/*
+* MAGIC --- first int of every binary weights file ("NLWB" read as a little-endian int)
+* VERSION - version of the format written by this class
+* SPARSE_VERSION - version of the format with only the nonzero weights of each layer
+*/
+   static final int MAGIC = 0x42574C4E;
+   static final int VERSION = 1;
+   static final int SPARSE_VERSION = 2;
+
+/*
+* isBinary tells whether a weights file is in the binary format by checking its magic number
+*
+* @param fileName the weights file
+* @return true if the file starts with MAGIC
+*/
+   public static boolean isBinary(String fileName) throws IOException
+   {
+      try (FileChannel ch = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ))
+      {
+         ByteBuffer head = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+         while (head.hasRemaining() && ch.read(head) >= 0) { }
+         return !head.hasRemaining() && head.getInt(0) == MAGIC;
+      }
+   } // public static boolean isBinary(String fileName) throws IOException
+
+/*
+* read memory-maps a binary weights file and loads it into the weight stores
+*
+* @param fileName the weights file
+* @param N the activations per layer the file must match
+* @param weights one weight store per connection layer, filled from the file
+*/
+   public static void read(String fileName, int[] N, LayerWeights[] weights) throws IOException
+   {
+      try (FileChannel ch = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ))
+      {
+         MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+         map.order(ByteOrder.LITTLE_ENDIAN);
+
+         if (map.getInt() != MAGIC)
+         {
+            throw new IOException("\"" + fileName + "\" is not a binary weights file");
+         }
+         int version = map.getInt();
+         if (version != VERSION && version != SPARSE_VERSION)
+         {
+            throw new IOException("Unsupported binary weights version " + version);
+         }
+
+         if (map.getInt() != N.length)
+         {
+            throw new ArrayIndexOutOfBoundsException("Weights file does not match configuration parameters");
+         }
+         for (int n = 0; n < N.length; n++)
+         {
+            if (map.getInt() != N[n])
+            {
+               throw new ArrayIndexOutOfBoundsException("Weights file does not match configuration parameters");
+            }
+         }
+
+         if (version == VERSION)
+         {
+            DoubleBuffer doubles = map.asDoubleBuffer();
+            for (int n = 0; n < weights.length; n++)
+            {
+               doubles.get(weights[n].w);
+            }
+            return;
+         }
+
+         for (int n = 0; n < weights.length; n++) // SPARSE_VERSION
+         {
+            double[] w = weights[n].w;
+            int count = map.getInt();
+            int[] index = new int[count];
+            map.asIntBuffer().get(index);
+            map.position(map.position() + 4 * count);
+
+            java.util.Arrays.fill(w, 0.0);
+            for (int i = 0; i < count; i++)
+            {
+               w[index[i]] = map.getDouble();
+            }
+         } // for (int n = 0; n < weights.length; n++)
+      } // try (FileChannel ch = ...)
+   } // public static void read(String fileName, int[] N, LayerWeights[] weights) throws IOException
+
+/*
+* write saves the weight stores in the binary format
+*
+* @param fileName the destination file
+* @param N the activations per layer
+* @param weights one weight store per connection layer
+*/
+   public static void write(String fileName, int[] N, LayerWeights[] weights) throws IOException
+   {
+      double[][] w = new double[weights.length][];
+      for (int n = 0; n < weights.length; n++)
+      {
+         w[n] = weights[n].w;
+      }
+
+      try (FileChannel ch = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                                             StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+      {
+         write(ch, N, w);
+      }
+   } // public static void write(String fileName, int[] N, LayerWeights[] weights) throws IOException
+
+/*
+* write writes the header and the weight arrays of a VERSION file to an open file, which Checkpoint follows with
+* the training state
+*
+* @param ch the file, at its start
+* @param N the activations per layer
+* @param weights the row-major weights of every connection layer
+*/
+   static void write(FileChannel ch, int[] N, double[][] weights) throws IOException
+   {
+      writeHeader(ch, VERSION, N);
+
+      for (int n = 0; n < weights.length; n++)
+      {
+         ByteBuffer body = ByteBuffer.allocate(8 * weights[n].length).order(ByteOrder.LITTLE_ENDIAN);
+         body.asDoubleBuffer().put(weights[n]);
+         while (body.hasRemaining()) { ch.write(body); }
+      }
+   } // static void write(FileChannel ch, int[] N, double[][] weights) throws IOException
+
+/*
+* length gives the size of a VERSION file, where anything appended to it, such as a checkpoint's state, starts
+*
+* @param N the activations per layer
+* @return the bytes of the header and the weights
+*/
+   static long length(int[] N)
+   {
+      long bytes = 4L * (3 + N.length);
+      for (int n = 0; n < N.length - 1; n++)
+      {
+         bytes += 8L * N[n] * N[n + 1];
+      }
+      return bytes;
+   }
+
+/*
+* writeSparse saves the nonzero weights of every layer in the SPARSE_VERSION format
+*
+* @param fileName the destination file
+* @param N the activations per layer
+* @param weights one weight store per connection layer
+*/
+   public static void writeSparse(String fileName, int[] N, LayerWeights[] weights) throws IOException
+   {
+      try (FileChannel ch = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                                             StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+      {
+         writeHeader(ch, SPARSE_VERSION, N);
+
+         for (int n = 0; n < weights.length; n++)
+         {
+            double[] w = weights[n].w;
+            int count = weights[n].nonzeros();
+            ByteBuffer body = ByteBuffer.allocate(4 + 12 * count).order(ByteOrder.LITTLE_ENDIAN);
+            body.putInt(count);
+            for (int ind = 0; ind < w.length; ind++)
+            {
+               if (w[ind] != 0.0) body.putInt(ind);
+            }
+            for (int ind = 0; ind < w.length; ind++)
+            {
+               if (w[ind] != 0.0) body.putDouble(w[ind]);
+            }
+            body.flip();
+            while (body.hasRemaining()) { ch.write(body); }
+         } // for (int n = 0; n < weights.length; n++)
+      } // try (FileChannel ch = ...)
+   } // public static void writeSparse(String fileName, int[] N, LayerWeights[] weights) throws IOException
+
+/*
+* writeHeader writes the magic number, a format version and the layout
+*
+* @param ch the file, at its start
+* @param version VERSION or SPARSE_VERSION
+* @param N the activations per layer
+*/
+   static void writeHeader(FileChannel ch, int version, int[] N) throws IOException
+   {
+      ByteBuffer head = ByteBuffer.allocate(4 * (3 + N.length)).order(ByteOrder.LITTLE_ENDIAN);
+      head.putInt(MAGIC).putInt(version).putInt(N.length);
+      for (int n = 0; n < N.length; n++)
+      {
+         head.putInt(N[n]);
+      }
+      head.flip();
+      while (head.hasRemaining()) { ch.write(head); }
+   } // static void writeHeader(FileChannel ch, int version, int[] N) throws IOException
+
+} // public class BinaryWeights
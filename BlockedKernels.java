@@ -0,0 +1,214 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file runs the LayerWeights kernels for very wide layers (such as the 54600 pel input layer) in parallel.
+* The rows of the layer are cut into contiguous blocks that run on the common ForkJoinPool.
+* The forward pass gives every block its own partial theta and then adds the partials together in block order,
+* so a given machine always produces the same sums. The backward kernels write disjoint rows and need no reduction.
+*
+* ==== Methods ====
+* blocks(int)
+* forward(LayerWeights, double[], double[])
+* forwardBatch(LayerWeights, double[][], double[][], int)
+* backward(LayerWeights, double[], double[])
+* backwardUpdate(LayerWeights, double[], double[], double, double[])
+* addOuter(LayerWeights, double, double[], double[])
+*/
+
+import java.util.concurrent.*;
+
+public class BlockedKernels
+{
+/*
+* MIN_BLOCK_ROWS - fewest rows worth handing to a separate thread
+* POOL ----------- the pool running the blocks
+*
+* FORWARD, FORWARD_BATCH, BACKWARD, BACKWARD_UPDATE and ADD_OUTER name the kernel a block runs
+*/
+   static final int MIN_BLOCK_ROWS = 1024;
+   static final ForkJoinPool POOL = ForkJoinPool.commonPool();
+
+   static final int FORWARD = 0;
+   static final int BACKWARD = 1;
+   static final int BACKWARD_UPDATE = 2;
+   static final int ADD_OUTER = 3;
+   static final int FORWARD_BATCH = 4;
+
+/*
+* blocks chooses how many blocks to cut a layer's rows into
+*
+* @param rows the number of rows of the layer
+* @return the number of blocks, at least 1
+*/
+   static int blocks(int rows)
+   {
+      int threads = POOL.getParallelism() + 1; // the calling thread works on blocks too
+      return Math.max(1, Math.min(threads, rows / MIN_BLOCK_ROWS));
+   }
+
+/*
+* forward computes theta[j] = sum over k of in[k] * w[k][j] with each block of rows summed in parallel
+*
+* @param lw the layer
+* @param in the source activations
+* @param theta the destination accumulator, overwritten
+*/
+   public static void forward(LayerWeights lw, double[] in, double[] theta)
+   {
+      int blocks = blocks(lw.rows);
+      int cols = lw.cols;
+      double[] partials = new double[blocks * cols];
+
+      POOL.invoke(new Blocks(lw, FORWARD, 0, blocks, blocks, in, partials, null, 0.0));
+
+      for (int j = 0; j < cols; j++)
+      {
+         double sum = 0.0;
+         for (int b = 0; b < blocks; b++)
+         {
+            sum += partials[b * cols + j];
+         }
+         theta[j] = sum;
+      } // for (int j = 0; j < cols; j++)
+   } // public static void forward(LayerWeights lw, double[] in, double[] theta)
+
+/*
+* forwardBatch runs LayerWeights.forwardBatch with blocks of rows in parallel, every block keeping its own partial
+* theta for each case, then adds the partials together in block order exactly as forward does
+*
+* @param lw the layer
+* @param in the source activations of every case
+* @param theta the destination accumulators of every case, overwritten
+* @param count the number of cases
+*/
+   public static void forwardBatch(LayerWeights lw, double[][] in, double[][] theta, int count)
+   {
+      int blocks = blocks(lw.rows);
+      int cols = lw.cols;
+      double[][] partials = new double[count][blocks * cols];
+
+      POOL.invoke(new Blocks(lw, FORWARD_BATCH, 0, blocks, blocks, in, partials, count));
+
+      for (int c = 0; c < count; c++)
+      {
+         for (int j = 0; j < cols; j++)
+         {
+            double sum = 0.0;
+            for (int b = 0; b < blocks; b++)
+            {
+               sum += partials[c][b * cols + j];
+            }
+            theta[c][j] = sum;
+         }
+      } // for (int c = 0; c < count; c++)
+   } // public static void forwardBatch(LayerWeights lw, double[][] in, double[][] theta, int count)
+
+/*
+* backward computes omega[k] = sum over j of psi[j] * w[k][j] with blocks of rows in parallel
+*/
+   public static void backward(LayerWeights lw, double[] psi, double[] omega)
+   {
+      int blocks = blocks(lw.rows);
+      POOL.invoke(new Blocks(lw, BACKWARD, 0, blocks, blocks, psi, omega, null, 0.0));
+   }
+
+/*
+* backwardUpdate runs LayerWeights.backwardUpdate with blocks of rows in parallel
+*/
+   public static void backwardUpdate(LayerWeights lw, double[] psi, double[] omega, double scale, double[] a)
+   {
+      int blocks = blocks(lw.rows);
+      POOL.invoke(new Blocks(lw, BACKWARD_UPDATE, 0, blocks, blocks, psi, omega, a, scale));
+   }
+
+/*
+* addOuter runs LayerWeights.addOuter with blocks of rows in parallel
+*/
+   public static void addOuter(LayerWeights lw, double scale, double[] a, double[] psi)
+   {
+      int blocks = blocks(lw.rows);
+      POOL.invoke(new Blocks(lw, ADD_OUTER, 0, blocks, blocks, psi, null, a, scale));
+   }
+
+/*
+* Blocks splits the block range [lo, hi) in half until each task holds a single block, then runs the kernel
+* on that block's rows. x, y and z are the kernel's array arguments in the order LayerWeights takes them;
+* FORWARD_BATCH takes xs and ys, one array per case, and count instead.
+*/
+   static class Blocks extends RecursiveAction
+   {
+      private static final long serialVersionUID = 1L; // ForkJoinTask is Serializable; Blocks are never serialized
+
+      final LayerWeights lw;
+      final int kernel, lo, hi, blocks;
+      final double[] x, y, z;
+      final double scale;
+      final double[][] xs, ys;
+      final int count;
+
+      Blocks(LayerWeights lw, int kernel, int lo, int hi, int blocks, double[] x, double[] y, double[] z, double scale)
+      {
+         this(lw, kernel, lo, hi, blocks, x, y, z, scale, null, null, 0);
+      }
+
+      Blocks(LayerWeights lw, int kernel, int lo, int hi, int blocks, double[][] xs, double[][] ys, int count)
+      {
+         this(lw, kernel, lo, hi, blocks, null, null, null, 0.0, xs, ys, count);
+      }
+
+      Blocks(LayerWeights lw, int kernel, int lo, int hi, int blocks, double[] x, double[] y, double[] z, double scale,
+             double[][] xs, double[][] ys, int count)
+      {
+         this.lw = lw;
+         this.kernel = kernel;
+         this.lo = lo;
+         this.hi = hi;
+         this.blocks = blocks;
+         this.x = x;
+         this.y = y;
+         this.z = z;
+         this.scale = scale;
+         this.xs = xs;
+         this.ys = ys;
+         this.count = count;
+      }
+
+      protected void compute()
+      {
+         if (hi - lo == 1)
+         {
+            int first = (int) ((long) lw.rows * lo / blocks);
+            int last  = (int) ((long) lw.rows * (lo + 1) / blocks);
+
+            if (kernel == FORWARD)
+            {
+               lw.forwardRows(x, y, lo * lw.cols, first, last);
+            }
+            else if (kernel == FORWARD_BATCH)
+            {
+               lw.forwardBatchRows(xs, ys, count, lo * lw.cols, first, last);
+            }
+            else if (kernel == BACKWARD)
+            {
+               lw.backwardRows(x, y, first, last);
+            }
+            else if (kernel == BACKWARD_UPDATE)
+            {
+               lw.backwardUpdateRows(x, y, scale, z, first, last);
+            }
+            else
+            {
+               lw.addOuterRows(scale, z, x, first, last);
+            }
+         } // if (hi - lo == 1)
+         else
+         {
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new Blocks(lw, kernel, lo, mid, blocks, x, y, z, scale, xs, ys, count),
+                      new Blocks(lw, kernel, mid, hi, blocks, x, y, z, scale, xs, ys, count));
+         }
+      } // protected void compute()
+   } // static class Blocks extends RecursiveAction
+
+} // public class BlockedKernels
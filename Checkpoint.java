@@ -0,0 +1,350 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file saves the state of a training run of an N-layer Network every few iterations or seconds, so a killed
+* run can carry on from its last checkpoint instead of from the start.
+* A checkpoint starts as a complete binary weights file (see BinaryWeights), so it can also be loaded as the weights
+* file of a control file. The training state follows it: the STATE magic number, the iteration count, avgError,
+* lambda, the optimizer's step count and per-weight state, the learning rate schedule's kind and state and the
+* early-stopping state with its best weights, all little-endian.
+* save copies the state on the training thread, which is only a few array copies, then a background thread writes it
+* to a temporary file, forces it to disk and renames it over the checkpoint, so the checkpoint on disk is always
+* either the previous one or the new one in full. If the previous write is still running, the new checkpoint is
+* skipped rather than queued; if it failed, the next save or finish throws its IOException, so training never
+* carries on without a valid checkpoint unnoticed.
+* Resuming checks that the control file asks for the same optimizer and learning rate schedule as the checkpoint.
+*
+* ==== Methods ====
+* Checkpoint(String, int, double)
+* due(int)
+* save(Nlayer)
+* copy(double[][])
+* write(Snapshot)
+* writeArrays(FileChannel, double[][])
+* checkPending()
+* finish()
+* restore(String, Nlayer)
+* readArrays(DoubleBuffer, double[][])
+*/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+public class Checkpoint
+{
+/*
+* STATE ---- first int of the training state after the weights ("NLCK" read as a little-endian int)
+* VERSION -- version of the training state written by this class
+*/
+   static final int STATE = 0x4B434C4E;
+   static final int VERSION = 1;
+
+/*
+* file ------ the checkpoint file
+* everyIter - iterations between checkpoints, 0 for none
+* everyNanos  nanoseconds between checkpoints, 0 for none
+* last ------ when the last checkpoint was taken
+* writer ---- the thread writing checkpoints
+* pending --- the write in progress, or null
+* written --- checkpoints taken
+* skipped --- checkpoints skipped because the previous write had not finished
+*/
+   final String file;
+   final int everyIter;
+   final long everyNanos;
+   long last = System.nanoTime();
+   final ExecutorService writer;
+   Future<?> pending;
+   int written, skipped;
+
+/*
+* Snapshot is a copy of everything a checkpoint holds, taken on the training thread
+*/
+   static class Snapshot
+   {
+      int[] N;
+      int iter, optimizerKind, scheduleKind, scheduleSince, bestIter, since;
+      double avgError, lambda, scheduleCurrent, scheduleBest, bestError;
+      long steps;
+      boolean early;
+      double[][] weights, m, s, best;
+   } // static class Snapshot
+
+/*
+* Constructor sets when checkpoints are due and starts the writer thread
+*
+* @param file the checkpoint file
+* @param everyIter iterations between checkpoints, 0 for none
+* @param everySeconds seconds between checkpoints, 0 for none
+*/
+   public Checkpoint(String file, int everyIter, double everySeconds)
+   {
+      this.file = file;
+      this.everyIter = everyIter;
+      everyNanos = (long) (everySeconds * 1e9);
+
+      writer = Executors.newSingleThreadExecutor(task ->
+      {
+         Thread t = new Thread(task, "checkpoint-writer");
+         t.setDaemon(true);
+         return t;
+      });
+   } // public Checkpoint(String file, int everyIter, double everySeconds)
+
+/*
+* due tells whether a checkpoint should be taken after an iteration
+*
+* @param iter the number of iterations done
+* @return true if everyIter iterations or everyNanos have passed
+*/
+   public boolean due(int iter)
+   {
+      return (everyIter > 0 && iter % everyIter == 0) || (everyNanos > 0 && System.nanoTime() - last >= everyNanos);
+   }
+
+/*
+* save copies the training state of a network and hands it to the writer thread
+*
+* @param net the network, between iterations; its double weights must be current
+* @throws IOException if the previous checkpoint could not be written
+*/
+   public void save(Nlayer net) throws IOException
+   {
+      last = System.nanoTime();
+      if (pending != null && !pending.isDone())
+      {
+         skipped++;
+         return;
+      }
+      if (pending != null)
+      {
+         checkPending(); // done, but it may have failed
+      }
+
+      Snapshot snap = new Snapshot();
+      snap.N = net.N.clone();
+      snap.iter = net.iter;
+      snap.avgError = net.avgError;
+      snap.lambda = net.lambda;
+
+      snap.weights = new double[net.weights.length][];
+      for (int n = 0; n < net.weights.length; n++)
+      {
+         snap.weights[n] = net.weights[n].w.clone();
+      }
+
+      Optimizer opt = net.optimizer;
+      snap.optimizerKind = opt.kind;
+      snap.steps = opt.t;
+      snap.m = (opt.m == null) ? null : copy(opt.m);
+      snap.s = (opt.s == null) ? null : copy(opt.s);
+
+      snap.scheduleKind = net.schedule.kind;
+      snap.scheduleCurrent = net.schedule.current;
+      snap.scheduleBest = net.schedule.bestError;
+      snap.scheduleSince = net.schedule.since;
+
+      snap.early = net.earlyStop != null;
+      if (snap.early)
+      {
+         snap.bestError = net.earlyStop.bestError;
+         snap.bestIter = net.earlyStop.bestIter;
+         snap.since = net.earlyStop.since;
+         snap.best = copy(net.earlyStop.best);
+      }
+
+      written++;
+      pending = writer.submit(() -> { write(snap); return null; });
+   } // public void save(Nlayer net) throws IOException
+
+/*
+* copy clones every row of a 2D array
+*/
+   static double[][] copy(double[][] from)
+   {
+      double[][] to = new double[from.length][];
+      for (int n = 0; n < from.length; n++)
+      {
+         to[n] = from[n].clone();
+      }
+      return to;
+   }
+
+/*
+* write writes a snapshot to a temporary file and renames it over the checkpoint; runs on the writer thread
+*
+* @param snap the snapshot
+*/
+   void write(Snapshot snap) throws IOException
+   {
+      Path target = Paths.get(file);
+      Path temp = Paths.get(file + ".tmp");
+
+      try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                             StandardOpenOption.TRUNCATE_EXISTING))
+      {
+         BinaryWeights.write(ch, snap.N, snap.weights); // so the checkpoint loads as a weights file
+
+         ByteBuffer state = ByteBuffer.allocate(92).order(ByteOrder.LITTLE_ENDIAN);
+         state.putInt(STATE).putInt(VERSION).putInt(snap.iter).putDouble(snap.avgError).putDouble(snap.lambda);
+         state.putInt(snap.optimizerKind).putLong(snap.steps);
+         state.putInt((snap.m == null) ? 0 : 1).putInt((snap.s == null) ? 0 : 1);
+         state.putInt(snap.scheduleKind).putDouble(snap.scheduleCurrent).putDouble(snap.scheduleBest);
+         state.putInt(snap.scheduleSince);
+         state.putInt(snap.early ? 1 : 0).putDouble(snap.bestError).putInt(snap.bestIter).putInt(snap.since);
+         state.flip();
+         while (state.hasRemaining()) { ch.write(state); }
+
+         if (snap.m != null) writeArrays(ch, snap.m);
+         if (snap.s != null) writeArrays(ch, snap.s);
+         if (snap.early) writeArrays(ch, snap.best);
+
+         ch.force(true);
+      } // try (FileChannel ch = ...)
+
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+   } // void write(Snapshot snap) throws IOException
+
+/*
+* writeArrays writes arrays of doubles one after another
+*
+* @param ch the file
+* @param arrays the arrays
+*/
+   static void writeArrays(FileChannel ch, double[][] arrays) throws IOException
+   {
+      for (double[] array : arrays)
+      {
+         ByteBuffer body = ByteBuffer.allocate(8 * array.length).order(ByteOrder.LITTLE_ENDIAN);
+         body.asDoubleBuffer().put(array);
+         while (body.hasRemaining()) { ch.write(body); }
+      }
+   }
+
+/*
+* checkPending waits for the last write and throws its failure, if any
+*/
+   void checkPending() throws IOException
+   {
+      try
+      {
+         pending.get();
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Interrupted while waiting for the checkpoint");
+      }
+      catch (ExecutionException e)
+      {
+         throw new IOException("Could not write checkpoint \"" + file + "\"", e.getCause());
+      }
+   } // void checkPending() throws IOException
+
+/*
+* finish waits for the last write and stops the writer thread
+*/
+   public void finish() throws IOException
+   {
+      writer.shutdown();
+      if (pending != null)
+      {
+         checkPending();
+      }
+   }
+
+/*
+* restore loads a checkpoint into a network allocated for training, so train carries on where the checkpoint was taken
+*
+* @param fileName the checkpoint
+* @param net the network; its layout, optimizer and schedule must match the checkpoint's
+*/
+   public static void restore(String fileName, Nlayer net) throws IOException
+   {
+      BinaryWeights.read(fileName, net.N, net.weights); // also checks the header and layout
+
+      try (FileChannel ch = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ))
+      {
+         MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+         map.order(ByteOrder.LITTLE_ENDIAN);
+
+         long start = BinaryWeights.length(net.N);
+         if (ch.size() < start + 8)
+         {
+            throw new IOException("\"" + fileName + "\" is a weights file without training state");
+         }
+         map.position((int) start);
+
+         if (map.getInt() != STATE)
+         {
+            throw new IOException("\"" + fileName + "\" is a weights file without training state");
+         }
+         int version = map.getInt();
+         if (version != VERSION)
+         {
+            throw new IOException("Unsupported checkpoint version " + version);
+         }
+
+         net.iter = map.getInt();
+         net.avgError = map.getDouble();
+         net.lambda = map.getDouble();
+
+         Optimizer opt = net.optimizer;
+         int kind = map.getInt();
+         if (kind != opt.kind)
+         {
+            throw new IllegalArgumentException("Checkpoint was taken with optimizer " + Optimizer.NAMES[kind]
+                                               + ", not " + opt.name());
+         }
+         opt.t = map.getLong();
+         boolean hasM = map.getInt() == 1;
+         boolean hasS = map.getInt() == 1;
+
+         LearningRateSchedule schedule = net.schedule;
+         kind = map.getInt();
+         if (kind != schedule.kind)
+         {
+            throw new IllegalArgumentException("Checkpoint was taken with schedule " + LearningRateSchedule.NAMES[kind]
+                                               + ", not " + schedule.name());
+         }
+         schedule.current = map.getDouble();
+         schedule.bestError = map.getDouble();
+         schedule.since = map.getInt();
+
+         boolean early = map.getInt() == 1;
+         double bestError = map.getDouble();
+         int bestIter = map.getInt();
+         int since = map.getInt();
+
+         DoubleBuffer doubles = map.asDoubleBuffer();
+         if (hasM) readArrays(doubles, opt.m);
+         if (hasS) readArrays(doubles, opt.s);
+         if (early && net.earlyStop != null)
+         {
+            net.earlyStop.bestError = bestError;
+            net.earlyStop.bestIter = bestIter;
+            net.earlyStop.since = since;
+            readArrays(doubles, net.earlyStop.best);
+         }
+      } // try (FileChannel ch = ...)
+   } // public static void restore(String fileName, Nlayer net) throws IOException
+
+/*
+* readArrays fills arrays of doubles one after another
+*
+* @param doubles the source
+* @param arrays the arrays to fill
+*/
+   static void readArrays(DoubleBuffer doubles, double[][] arrays)
+   {
+      for (double[] array : arrays)
+      {
+         doubles.get(array);
+      }
+   }
+
+} // public class Checkpoint
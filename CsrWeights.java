@@ -0,0 +1,134 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file holds the weights of one pruned connection layer of an N-layer Network in compressed sparse row (CSR)
+* form: for every source activation k, only the weights that survived pruning, with the destination activation j
+* each belongs to. Row k's weights are at positions rowStart[k] to rowStart[k + 1] - 1 of col and value, in
+* increasing j order.
+* forward visits the rows in increasing k order and skips zero inputs as well as pruned weights; both only ever
+* added zero to a sum, so theta is exactly what the scalar dense LayerWeights.forward gives for the pruned weights,
+* while the work and the memory read shrink with the fraction of weights kept.
+* A CsrWeights is a snapshot and never changes, so it is only used for running, never for training.
+*
+* ==== Methods ====
+* CsrWeights(LayerWeights)
+* forward(double[], double[])
+* forward(SparseVector, double[])
+* density()
+*/
+
+public class CsrWeights
+{
+/*
+* rows ------ number of source activations
+* cols ------ number of destination activations
+* rowStart -- where each row's weights start in col and value; rowStart[rows] is the number of weights kept
+* col ------- the destination activation of every weight kept
+* value ----- every weight kept
+*/
+   final int rows, cols;
+   final int[] rowStart, col;
+   final double[] value;
+
+/*
+* Constructor compresses the nonzero weights of a layer
+*
+* @param from the layer, whose zero weights are left out
+*/
+   public CsrWeights(LayerWeights from)
+   {
+      rows = from.rows;
+      cols = from.cols;
+      rowStart = new int[rows + 1];
+
+      int count = 0;
+      for (double w : from.w)
+      {
+         if (w != 0.0) count++;
+      }
+      col = new int[count];
+      value = new double[count];
+
+      int p = 0;
+      int ind = 0;
+      for (int k = 0; k < rows; k++)
+      {
+         rowStart[k] = p;
+         for (int j = 0; j < cols; j++)
+         {
+            double w = from.w[ind++];
+            if (w != 0.0)
+            {
+               col[p] = j;
+               value[p] = w;
+               p++;
+            }
+         }
+      } // for (int k = 0; k < rows; k++)
+      rowStart[rows] = p;
+   } // public CsrWeights(LayerWeights from)
+
+/*
+* forward computes theta[j] = sum over k of in[k] * w[k][j] over the weights kept
+*
+* @param in the source activations (length rows)
+* @param theta the destination accumulator (length cols), overwritten
+*/
+   public void forward(double[] in, double[] theta)
+   {
+      for (int j = 0; j < cols; j++)
+      {
+         theta[j] = 0.0;
+      }
+
+      for (int k = 0; k < rows; k++)
+      {
+         double ak = in[k];
+         if (ak != 0.0)
+         {
+            int end = rowStart[k + 1];
+            for (int p = rowStart[k]; p < end; p++)
+            {
+               theta[col[p]] += ak * value[p];
+            }
+         }
+      } // for (int k = 0; k < rows; k++)
+   } // public void forward(double[] in, double[] theta)
+
+/*
+* forward computes the same sums for an input case held as a SparseVector, visiting only its nonzero rows
+*
+* @param in the source activations, as index/value pairs
+* @param theta the destination accumulator (length cols), overwritten
+*/
+   public void forward(SparseVector in, double[] theta)
+   {
+      for (int j = 0; j < cols; j++)
+      {
+         theta[j] = 0.0;
+      }
+
+      for (int i = 0; i < in.count; i++)
+      {
+         double ak = in.value[i];
+         int k = in.index[i];
+         int end = rowStart[k + 1];
+         for (int p = rowStart[k]; p < end; p++)
+         {
+            theta[col[p]] += ak * value[p];
+         }
+      } // for (int i = 0; i < in.count; i++)
+   } // public void forward(SparseVector in, double[] theta)
+
+/*
+* density gives the fraction of the layer's weights that were kept
+*
+* @return weights kept / (rows * cols)
+*/
+   public double density()
+   {
+      return (double) rowStart[rows] / ((double) rows * cols);
+   }
+
+} // public class CsrWeights
@@ -0,0 +1,108 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file stops the training of an N-layer Network once the average error stops improving, and keeps the best
+* weights seen. After every iteration the network reports its average error; whenever it improves by more than
+* minDelta the weights are copied aside, and after patience iterations without such an improvement training stops
+* and the copied weights can be put back.
+* The weights copied are those after the iteration, while its average error is mostly measured as its cases train,
+* before some of its updates, so bestError is not the error of the copied weights; Nlayer measures them again
+* after restore.
+*
+* ==== Methods ====
+* EarlyStopping(int, double, int[])
+* improves(double)
+* update(int, double, LayerWeights[])
+* restore(LayerWeights[])
+*/
+
+public class EarlyStopping
+{
+/*
+* patience --- iterations without improvement before stopping
+* minDelta --- how much the average error must drop to count as an improvement
+*
+* best ------- copy of the weights at bestIter, one flat array per connection layer
+* bestError -- the lowest average error seen
+* bestIter --- the iteration that reached bestError
+* since ------ iterations since the last improvement
+*/
+   final int patience;
+   final double minDelta;
+
+   final double[][] best;
+   double bestError = Double.MAX_VALUE;
+   int bestIter, since;
+
+/*
+* Constructor allocates room for a copy of the weights
+*
+* @param patience iterations without improvement before stopping
+* @param minDelta the smallest drop in average error that counts as an improvement
+* @param N the activations per layer
+*/
+   public EarlyStopping(int patience, double minDelta, int[] N)
+   {
+      this.patience = patience;
+      this.minDelta = minDelta;
+
+      best = new double[N.length - 1][];
+      for (int n = 0; n < N.length - 1; n++)
+      {
+         best[n] = new double[N[n] * N[n + 1]];
+      }
+   } // public EarlyStopping(int patience, double minDelta, int[] N)
+
+/*
+* improves tells whether an average error would count as an improvement
+*
+* @param avgError the average error of an iteration
+* @return true if update would copy the weights for this error
+*/
+   public boolean improves(double avgError)
+   {
+      return avgError < bestError - minDelta;
+   }
+
+/*
+* update records the result of an iteration, copying the weights aside if they are the best so far
+*
+* @param iter the number of iterations done
+* @param avgError the average error of the iteration
+* @param weights the weights after the iteration
+* @return true if training should stop
+*/
+   public boolean update(int iter, double avgError, LayerWeights[] weights)
+   {
+      if (improves(avgError))
+      {
+         bestError = avgError;
+         bestIter = iter;
+         since = 0;
+
+         for (int n = 0; n < weights.length; n++)
+         {
+            System.arraycopy(weights[n].w, 0, best[n], 0, best[n].length);
+         }
+         return false;
+      } // if (improves(avgError))
+
+      since++;
+      return since >= patience;
+   } // public boolean update(int iter, double avgError, LayerWeights[] weights)
+
+/*
+* restore puts the best weights back
+*
+* @param weights the weights to overwrite
+*/
+   public void restore(LayerWeights[] weights)
+   {
+      for (int n = 0; n < weights.length; n++)
+      {
+         System.arraycopy(best[n], 0, weights[n].w, 0, best[n].length);
+      }
+   }
+
+} // public class EarlyStopping
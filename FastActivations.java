@@ -0,0 +1,96 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file holds fast approximations of the sigmoid and hyperbolic tangent activation functions that avoid Math.exp.
+*
+* The table versions interpolate linearly between values of tanh sampled every 1 / STEPS over [-RANGE, RANGE]
+* and saturate outside it; their absolute error is below 1e-6 for tanh and 5e-7 for sigmoid.
+* The rational versions use the [9/8] Pade approximant of tanh, clamped to +-1 past CLAMP, with an absolute error
+* below 1e-5 for tanh and 5e-6 for sigmoid. sigmoid(x) is computed as (1 + tanh(x / 2)) / 2 in both cases.
+*
+* ==== Methods ====
+* tanhTable(double)
+* sigmoidTable(double)
+* tanhRational(double)
+* sigmoidRational(double)
+*/
+
+public class FastActivations
+{
+/*
+* RANGE - the table covers tanh over [-RANGE, RANGE]; beyond it tanh is within 1e-7 of +-1
+* STEPS - table entries per unit of input
+* TABLE - tanh sampled at every 1 / STEPS from -RANGE to RANGE, plus one entry so interpolation never overruns
+* CLAMP - input past which the rational tanh returns +-1
+*/
+   static final int RANGE = 9;
+   static final int STEPS = 512;
+   static final double[] TABLE = new double[2 * RANGE * STEPS + 2];
+   static final double CLAMP = 6.3;
+
+   static
+   {
+      for (int ind = 0; ind < TABLE.length; ind++)
+      {
+         TABLE[ind] = Math.tanh((double) ind / STEPS - RANGE);
+      }
+   }
+
+/*
+* tanhTable approximates tanh by linear interpolation in TABLE
+*
+* @param input a double value to be operated on
+* @return approximately tanh(input)
+*/
+   public static double tanhTable(double input)
+   {
+      if (input >= RANGE)  return 1.0;
+      if (input <= -RANGE) return -1.0;
+
+      double pos = (input + RANGE) * STEPS;
+      int ind = (int) pos;
+      double frac = pos - ind;
+      return TABLE[ind] + frac * (TABLE[ind + 1] - TABLE[ind]);
+   } // public static double tanhTable(double input)
+
+/*
+* sigmoidTable approximates the sigmoid with tanhTable
+*
+* @param input a double value to be operated on
+* @return approximately sigmoid(input)
+*/
+   public static double sigmoidTable(double input)
+   {
+      return 0.5 + 0.5 * tanhTable(0.5 * input);
+   }
+
+/*
+* tanhRational approximates tanh with its [9/8] Pade approximant
+*
+* @param input a double value to be operated on
+* @return approximately tanh(input)
+*/
+   public static double tanhRational(double input)
+   {
+      if (input >= CLAMP)  return 1.0;
+      if (input <= -CLAMP) return -1.0;
+
+      double x2 = input * input;
+      double num = input * (34459425.0 + x2 * (4729725.0 + x2 * (135135.0 + x2 * (990.0 + x2))));
+      double den = 34459425.0 + x2 * (16216200.0 + x2 * (945945.0 + x2 * (13860.0 + x2 * 45.0)));
+      return num / den;
+   } // public static double tanhRational(double input)
+
+/*
+* sigmoidRational approximates the sigmoid with tanhRational
+*
+* @param input a double value to be operated on
+* @return approximately sigmoid(input)
+*/
+   public static double sigmoidRational(double input)
+   {
+      return 0.5 + 0.5 * tanhRational(0.5 * input);
+   }
+
+} // public class FastActivations
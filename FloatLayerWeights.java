@@ -0,0 +1,235 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file is the single-precision twin of LayerWeights: the weights connecting one layer to the next held in one
+* contiguous float array, row-major by source activation, so weight (k, j) lives at index k * cols + j.
+* The kernels are the same as LayerWeights but read and write floats, halving the memory traffic of every pass.
+* Sums are still accumulated in float, so results differ from the double engine by float rounding.
+* forwardSparse and addOuterSparse take an input case as the index/value pairs of its nonzero inputs and visit only
+* those rows, like the LayerWeights kernels of the same names. There are no Vector API or parallel kernels here.
+*
+* ==== Methods ====
+* FloatLayerWeights(int, int)
+* load(LayerWeights)
+* store(LayerWeights)
+* forward(float[], float[])
+* forwardSparse(int[], float[], float[])
+* backwardUpdate(float[], float[], float, float[])
+* backward(float[], float[])
+* addOuter(float, float[], float[])
+* addOuterSparse(float, int[], float[], float[])
+* addScaled(float, FloatLayerWeights)
+* clear()
+*/
+
+import java.util.*;
+
+public class FloatLayerWeights
+{
+/*
+* rows - number of source activations (N[n])
+* cols - number of destination activations (N[n + 1])
+* w ---- the weights, row-major: w[k * cols + j] connects activation k to activation j
+*/
+   final int rows, cols;
+   final float[] w;
+
+/*
+* Constructor allocates a zeroed weight store for a rows x cols connection layer
+*
+* @param rows the number of source activations
+* @param cols the number of destination activations
+*/
+   public FloatLayerWeights(int rows, int cols)
+   {
+      this.rows = rows;
+      this.cols = cols;
+      w = new float[rows * cols];
+   }
+
+/*
+* load rounds every weight of a double weight store of the same shape to float
+*
+* @param from the double weights
+*/
+   public void load(LayerWeights from)
+   {
+      double[] d = from.w;
+      for (int ind = 0; ind < w.length; ind++)
+      {
+         w[ind] = (float) d[ind];
+      }
+   }
+
+/*
+* store widens every weight into a double weight store of the same shape, such as before saving
+*
+* @param to the double weights, overwritten
+*/
+   public void store(LayerWeights to)
+   {
+      double[] d = to.w;
+      for (int ind = 0; ind < w.length; ind++)
+      {
+         d[ind] = w[ind];
+      }
+   }
+
+/*
+* forward computes theta[j] = sum over k of in[k] * w[k][j] for every destination activation
+*
+* @param in the source activations (length rows)
+* @param theta the destination accumulator (length cols), overwritten
+*/
+   public void forward(float[] in, float[] theta)
+   {
+      Arrays.fill(theta, 0.0f);
+
+      int row = 0;
+      for (int k = 0; k < rows; k++)
+      {
+         float ak = in[k];
+         for (int j = 0; j < cols; j++)
+         {
+            theta[j] += ak * w[row + j];
+         }
+         row += cols;
+      } // for (int k = 0; k < rows; k++)
+   } // public void forward(float[] in, float[] theta)
+
+/*
+* forwardSparse computes theta[j] = sum over the nonzero in[k] of in[k] * w[k][j]
+*
+* @param index the positions of the nonzero source activations, increasing
+* @param value the nonzero source activations, one per index
+* @param theta the destination accumulator (length cols), overwritten
+*/
+   public void forwardSparse(int[] index, float[] value, float[] theta)
+   {
+      Arrays.fill(theta, 0.0f);
+
+      for (int i = 0; i < index.length; i++)
+      {
+         float ak = value[i];
+         int row = index[i] * cols;
+         for (int j = 0; j < cols; j++)
+         {
+            theta[j] += ak * w[row + j];
+         }
+      } // for (int i = 0; i < index.length; i++)
+   } // public void forwardSparse(int[] index, float[] value, float[] theta)
+
+/*
+* backwardUpdate accumulates omega[k] = sum over j of psi[j] * w[k][j] using the weights before they change,
+* then applies w[k][j] += scale * a[k] * psi[j], in one pass over the weights
+*
+* @param psi the psi values of the destination layer (length cols)
+* @param omega the omega accumulator for the source layer (length rows), overwritten
+* @param scale the step size (lambda)
+* @param a the source activations (length rows)
+*/
+   public void backwardUpdate(float[] psi, float[] omega, float scale, float[] a)
+   {
+      int row = 0;
+      for (int k = 0; k < rows; k++)
+      {
+         float om = 0.0f;
+         float step = scale * a[k];
+         for (int j = 0; j < cols; j++)
+         {
+            om         += psi[j] * w[row + j];
+            w[row + j] += step * psi[j];
+         }
+         omega[k] = om;
+         row += cols;
+      } // for (int k = 0; k < rows; k++)
+   } // public void backwardUpdate(float[] psi, float[] omega, float scale, float[] a)
+
+/*
+* backward accumulates omega[k] = sum over j of psi[j] * w[k][j] without changing the weights
+*
+* @param psi the psi values of the destination layer (length cols)
+* @param omega the omega accumulator for the source layer (length rows), overwritten
+*/
+   public void backward(float[] psi, float[] omega)
+   {
+      int row = 0;
+      for (int k = 0; k < rows; k++)
+      {
+         float om = 0.0f;
+         for (int j = 0; j < cols; j++)
+         {
+            om += psi[j] * w[row + j];
+         }
+         omega[k] = om;
+         row += cols;
+      } // for (int k = 0; k < rows; k++)
+   } // public void backward(float[] psi, float[] omega)
+
+/*
+* addOuter applies the rank-1 update w[k][j] += scale * a[k] * psi[j]
+*
+* @param scale the step size (lambda)
+* @param a the source activations (length rows)
+* @param psi the psi values of the destination layer (length cols)
+*/
+   public void addOuter(float scale, float[] a, float[] psi)
+   {
+      int row = 0;
+      for (int k = 0; k < rows; k++)
+      {
+         float step = scale * a[k];
+         for (int j = 0; j < cols; j++)
+         {
+            w[row + j] += step * psi[j];
+         }
+         row += cols;
+      } // for (int k = 0; k < rows; k++)
+   } // public void addOuter(float scale, float[] a, float[] psi)
+
+/*
+* addOuterSparse applies w[k][j] += scale * a[k] * psi[j] to the rows of the nonzero a[k] only
+*
+* @param scale the step size (lambda)
+* @param index the positions of the nonzero source activations, increasing
+* @param value the nonzero source activations, one per index
+* @param psi the psi values of the destination layer (length cols)
+*/
+   public void addOuterSparse(float scale, int[] index, float[] value, float[] psi)
+   {
+      for (int i = 0; i < index.length; i++)
+      {
+         float step = scale * value[i];
+         int row = index[i] * cols;
+         for (int j = 0; j < cols; j++)
+         {
+            w[row + j] += step * psi[j];
+         }
+      } // for (int i = 0; i < index.length; i++)
+   } // public void addOuterSparse(float scale, int[] index, float[] value, float[] psi)
+
+/*
+* addScaled applies w += scale * other.w, used to apply an accumulated gradient
+*
+* @param scale the step size
+* @param other a weight store of the same shape
+*/
+   public void addScaled(float scale, FloatLayerWeights other)
+   {
+      float[] o = other.w;
+      for (int ind = 0; ind < w.length; ind++)
+      {
+         w[ind] += scale * o[ind];
+      }
+   }
+
+/*
+* clear sets every weight to zero, used to reset gradient accumulators between batches
+*/
+   public void clear()
+   {
+      Arrays.fill(w, 0.0f);
+   }
+
+} // public class FloatLayerWeights
@@ -0,0 +1,320 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file is the single-precision engine of an N-layer Network, used when the control file asks for "precision float".
+* It converts the network's weights to float once and runs on the cases Nlayer loaded straight into floatInputs,
+* then trains and runs entirely on float arrays with FloatLayerWeights kernels. Training follows the same online
+* and batch schemes as Nlayer, and the error sums are kept in double so avgError stays comparable with the double
+* engine. Weights are widened back into the network's LayerWeights with storeWeights whenever they need to be saved,
+* so the weights files keep their double format; those double weights stay allocated, as the copy that is loaded,
+* saved, checkpointed and restored by early stopping, so only the cases take half the memory of the double engine.
+* Cases with at most net.sparseDensity nonzero inputs run through the first layer as index/value pairs of their
+* nonzero inputs, as in the double engine (see SparseVector).
+*
+* ==== Methods ====
+* FloatNetwork(Nlayer)
+* forward(int)
+* addOuterFirst(FloatLayerWeights, float, int)
+* trainEpoch()
+* trainEpochOnline()
+* trainEpochBatch()
+* backpropAccumulate(int)
+* outputPsi(double[])
+* runCases()
+* storeWeights()
+*/
+
+public class FloatNetwork
+{
+/*
+* net ------- the network this engine trains and runs; supplies the layout, parameters and activation functions
+* layers ---- number of layers of the network
+* N --------- number of activations per layer
+* weights --- float copy of the weights
+* gradients - accumulated weight steps (a * psi) for the current batch; only allocated when batchSize != 1
+* a --------- activations of the current case; a[0] points at the case's inputs
+* theta ----- theta values of the current case
+* psi ------- psi values of the current case
+* inputs ---- the network's inputs, as floats (net.floatInputs)
+* sparseIndex the positions of the nonzero inputs of every case, or null for a case that runs dense
+* sparseValue the nonzero inputs of every case, or null for a case that runs dense
+*/
+   final Nlayer net;
+   final int layers;
+   final int[] N;
+   final FloatLayerWeights[] weights;
+   FloatLayerWeights[] gradients;
+   final float[][] a, theta, psi;
+   final float[][] inputs;
+   final int[][] sparseIndex;
+   final float[][] sparseValue;
+
+/*
+* Constructor allocates the float buffers, converts the network's weights and gathers the sparse inputs
+*
+* @param net the network, with its weights and floatInputs already populated
+*/
+   public FloatNetwork(Nlayer net)
+   {
+      this.net = net;
+      layers = net.layers;
+      N = net.N;
+
+      weights = new FloatLayerWeights[layers - 1];
+      for (int n = 0; n < layers - 1; n++)
+      {
+         weights[n] = new FloatLayerWeights(N[n], N[n + 1]);
+         weights[n].load(net.weights[n]);
+      }
+
+      if (net.training && net.batchSize != 1)
+      {
+         gradients = new FloatLayerWeights[layers - 1];
+         for (int n = 0; n < layers - 1; n++)
+         {
+            gradients[n] = new FloatLayerWeights(N[n], N[n + 1]);
+         }
+      }
+
+      a = new float[layers][];
+      theta = new float[layers][];
+      psi = new float[layers][];
+      for (int n = 1; n < layers; n++) // the input layer points at the case's inputs
+      {
+         a[n] = new float[N[n]];
+         theta[n] = new float[N[n]];
+         psi[n] = new float[N[n]];
+      }
+
+      inputs = net.floatInputs;
+      sparseIndex = new int[inputs.length][];
+      sparseValue = new float[inputs.length][];
+      for (int c = 0; c < inputs.length && net.sparseDensity > 0.0; c++)
+      {
+         int count = 0;
+         for (float x : inputs[c])
+         {
+            if (x != 0.0f) count++;
+         }
+         if (count > net.sparseDensity * N[0])
+         {
+            continue; // dense enough to run dense
+         }
+
+         sparseIndex[c] = new int[count];
+         sparseValue[c] = new float[count];
+         int i = 0;
+         for (int k = 0; k < N[0]; k++)
+         {
+            if (inputs[c][k] != 0.0f)
+            {
+               sparseIndex[c][i] = k;
+               sparseValue[c][i] = inputs[c][k];
+               i++;
+            }
+         }
+      } // for (int c = 0; c < inputs.length && net.sparseDensity > 0.0; c++)
+   } // public FloatNetwork(Nlayer net)
+
+/*
+* forward runs one case through the network, leaving its activations in a and theta
+*
+* @param c the case
+*/
+   public void forward(int c)
+   {
+      a[0] = inputs[c];
+
+      for (int n = 1; n < layers; n++)
+      {
+         if (n == 1 && sparseIndex[c] != null)
+         {
+            weights[0].forwardSparse(sparseIndex[c], sparseValue[c], theta[1]);
+         }
+         else
+         {
+            weights[n - 1].forward(a[n - 1], theta[n]);
+         }
+         net.act[n].forward(theta[n], a[n]);
+      }
+   } // public void forward(int c)
+
+/*
+* addOuterFirst applies the rank-1 update of the first layer, lw[k][j] += scale * a[0][k] * psi[1][j], visiting
+* only the nonzero inputs of a sparse case
+*
+* @param lw the first layer's weights or gradients
+* @param scale the step size
+* @param c the case in a[0]
+*/
+   public void addOuterFirst(FloatLayerWeights lw, float scale, int c)
+   {
+      if (sparseIndex[c] != null)
+      {
+         lw.addOuterSparse(scale, sparseIndex[c], sparseValue[c], psi[1]);
+      }
+      else
+      {
+         lw.addOuter(scale, a[0], psi[1]);
+      }
+   } // public void addOuterFirst(FloatLayerWeights lw, float scale, int c)
+
+/*
+* trainEpoch runs one training iteration over every case and leaves the summed case error in net.totalError
+*/
+   public void trainEpoch()
+   {
+      if (net.batchSize == 1)
+      {
+         trainEpochOnline();
+      }
+      else
+      {
+         trainEpochBatch();
+      }
+   }
+
+/*
+* trainEpochOnline updates the weights after every case and measures the case error as net.errorPass says,
+* the same as Nlayer.trainEpochOnline
+*/
+   public void trainEpochOnline()
+   {
+      float lambda = (float) net.lambda;
+      int out = layers - 1;
+      net.totalError = 0.0;
+
+      for (int c = 0; c < net.cases; c++)
+      {
+         forward(c);
+         double caseError = outputPsi(net.eOutputs[c]); // the error before the update, for errorPass fused
+
+         for (int n = layers - 2; n > 0; n--)
+         {
+            weights[n].backwardUpdate(psi[n + 1], psi[n], lambda, a[n]); // psi[n] holds the omegas here
+            net.act[n].backward(a[n], psi[n]); // ψk = Ωk * ƒ'(Θk), from the cached ƒ(Θk)
+         } // for (int n = layers - 2; n > 0; n--)
+
+         addOuterFirst(weights[0], lambda, c);
+
+         if (net.errorPass == Nlayer.RERUN)
+         {
+            forward(c); // run again with updated weights for error calculation
+
+            caseError = 0.0;
+            for (int i = 0; i < N[out]; i++)
+            {
+               double omega = net.eOutputs[c][i] - a[out][i];
+               caseError   += (omega * omega) / 2;
+            }
+         } // if (net.errorPass == Nlayer.RERUN)
+
+         if (net.errorPass != Nlayer.EPOCH)
+         {
+            net.totalError += caseError;
+            net.metrics.caseError(caseError);
+         }
+      } // for (int c = 0; c < net.cases; c++)
+   } // public void trainEpochOnline()
+
+/*
+* trainEpochBatch accumulates gradients over net.batchSize cases (0 for the full batch) and steps the weights
+* once per batch by the mean gradient, the same as Nlayer.trainEpochBatch
+*/
+   public void trainEpochBatch()
+   {
+      int cases = net.cases;
+      int batch = (net.batchSize == 0) ? cases : net.batchSize;
+      net.totalError = 0.0;
+
+      for (int start = 0; start < cases; start += batch)
+      {
+         int end = Math.min(start + batch, cases);
+
+         for (int c = start; c < end; c++)
+         {
+            forward(c);
+            double caseError = outputPsi(net.eOutputs[c]);
+            net.totalError += caseError;
+            net.metrics.caseError(caseError);
+            backpropAccumulate(c);
+         }
+
+         float scale = (float) (net.lambda / (end - start));
+         for (int n = 0; n < layers - 1; n++)
+         {
+            weights[n].addScaled(scale, gradients[n]);
+            gradients[n].clear();
+         }
+      } // for (int start = 0; start < cases; start += batch)
+   } // public void trainEpochBatch()
+
+/*
+* backpropAccumulate propagates psi back through the network after forward and outputPsi and adds a * psi
+* for every weight into gradients, leaving the weights themselves unchanged
+*
+* @param c the case that was run
+*/
+   public void backpropAccumulate(int c)
+   {
+      for (int n = layers - 2; n > 0; n--)
+      {
+         gradients[n].addOuter(1.0f, a[n], psi[n + 1]);
+         weights[n].backward(psi[n + 1], psi[n]); // psi[n] holds the omegas here
+         net.act[n].backward(a[n], psi[n]);
+      } // for (int n = layers - 2; n > 0; n--)
+
+      addOuterFirst(gradients[0], 1.0f, c);
+   } // public void backpropAccumulate(int c)
+
+/*
+* outputPsi sets the psi values of the output layer after forward
+*
+* @param expected the expected outputs of the case
+* @return the error of the case
+*/
+   public double outputPsi(double[] expected)
+   {
+      int out = layers - 1;
+      double caseError = 0.0;
+
+      for (int i = 0; i < N[out]; i++)
+      {
+         double omega = expected[i] - a[out][i];  // ωi = (Ti − Fi)
+         caseError   += (omega * omega) / 2;
+         psi[out][i]  = (float) omega;
+      }
+      net.act[out].backward(a[out], psi[out]);
+      return caseError;
+   } // public double outputPsi(double[] expected)
+
+/*
+* runCases runs every case and writes the outputs into net.cOutputs
+*/
+   public void runCases()
+   {
+      int out = layers - 1;
+      for (int c = 0; c < net.cases; c++)
+      {
+         forward(c);
+
+         for (int i = 0; i < N[out]; i++)
+         {
+            net.cOutputs[c][i] = a[out][i];
+         }
+      }
+   } // public void runCases()
+
+/*
+* storeWeights widens the float weights back into the network's double weights
+*/
+   public void storeWeights()
+   {
+      for (int n = 0; n < layers - 1; n++)
+      {
+         weights[n].store(net.weights[n]);
+      }
+   }
+
+} // public class FloatNetwork
@@ -0,0 +1,117 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file holds the scratch state for running cases through an InferenceModel on one thread.
+* A context owns its activations and theta arrays and only reads the shared model, so any number of contexts can run
+* against one model at once; a single context must only be used by one thread at a time.
+* Blocks of cases run through each layer together with LayerWeights.forwardBatch, as in Nlayer.runBlock.
+*
+* ==== Methods ====
+* InferenceContext(InferenceModel)
+* run(double[])
+* runBatch(double[][], int, int, double[][])
+*/
+
+public class InferenceContext
+{
+/*
+* BLOCK ------ cases runBatch pushes through each layer together
+*
+* model ------ the model being run
+* a ---------- activations of the current case; a[0] points at its inputs
+* theta ------ theta values of the current case
+* aBatch ----- activations of every layer for each case of a block, allocated by the first runBatch
+* thetaBatch - theta of every layer for each case of a block
+*/
+   static final int BLOCK = 32;
+
+   final InferenceModel model;
+   final double[][] a, theta;
+   double[][][] aBatch, thetaBatch;
+
+/*
+* Constructor allocates the scratch arrays for the model's layout
+*
+* @param model the model to run
+*/
+   public InferenceContext(InferenceModel model)
+   {
+      this.model = model;
+      int[] N = model.N;
+
+      a = new double[model.layers][];
+      theta = new double[model.layers][];
+      for (int n = 1; n < model.layers; n++) // the input layer points at the case's inputs
+      {
+         a[n] = new double[N[n]];
+         theta[n] = new double[N[n]];
+      }
+   } // public InferenceContext(InferenceModel model)
+
+/*
+* run runs one case through the network
+*
+* @param inputs the activations for the first layer
+* @return the output activations, owned by this context and overwritten by the next run
+*/
+   public double[] run(double[] inputs)
+   {
+      a[0] = inputs;
+      for (int n = 1; n < model.layers; n++)
+      {
+         model.weights[n - 1].forward(a[n - 1], theta[n]);
+         model.act[n].forward(theta[n], a[n]);
+      }
+      return a[model.layers - 1];
+   } // public double[] run(double[] inputs)
+
+/*
+* runBatch runs several cases through the network, BLOCK at a time
+*
+* @param in the inputs of the cases, one row per case
+* @param first the first row to run
+* @param count the number of rows to run
+* @param out filled with the output activations of row first + c at out[c]
+*/
+   public void runBatch(double[][] in, int first, int count, double[][] out)
+   {
+      int layers = model.layers;
+      int[] N = model.N;
+      if (aBatch == null)
+      {
+         aBatch = new double[layers][][];
+         thetaBatch = new double[layers][][];
+         aBatch[0] = new double[BLOCK][];
+         for (int n = 1; n < layers; n++)
+         {
+            aBatch[n] = new double[BLOCK][N[n]];
+            thetaBatch[n] = new double[BLOCK][N[n]];
+         }
+      } // if (aBatch == null)
+
+      for (int start = 0; start < count; start += BLOCK)
+      {
+         int block = Math.min(BLOCK, count - start);
+         for (int c = 0; c < block; c++)
+         {
+            aBatch[0][c] = in[first + start + c];
+         }
+
+         for (int n = 1; n < layers; n++)
+         {
+            model.weights[n - 1].forwardBatch(aBatch[n - 1], thetaBatch[n], block);
+            for (int c = 0; c < block; c++)
+            {
+               model.act[n].forward(thetaBatch[n][c], aBatch[n][c]);
+            }
+         }
+
+         for (int c = 0; c < block; c++)
+         {
+            System.arraycopy(aBatch[layers - 1][c], 0, out[start + c], 0, N[layers - 1]);
+         }
+      } // for (int start = 0; start < count; start += BLOCK)
+   } // public void runBatch(double[][] in, int first, int count, double[][] out)
+
+} // public class InferenceContext
@@ -0,0 +1,146 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file holds a trained N-layer Network for inference only: the layer sizes, the weights and the activation
+* functions, and nothing that changes while cases run. Every field is final and set before the constructor returns,
+* and nothing here writes to the weights afterwards, so one model can be shared by any number of threads without
+* locking or copying. The per-case scratch arrays live in an InferenceContext, one per thread.
+*
+* ==== Methods ====
+* InferenceModel(Nlayer)
+* InferenceModel(int[], LayerWeights[], Activation[])
+* load(String)
+* inputs()
+* outputs()
+* newContext()
+* context()
+* run(double[], double[])
+*/
+
+import java.io.*;
+
+public final class InferenceModel
+{
+/*
+* layers --- number of layers of the network
+* N -------- number of activations per layer
+* weights -- the weights of each connection layer, never written after construction
+* act ------ the activation function of each layer after the input layer (act[0] is unused)
+* contexts - the scratch context of each thread that has called run
+*/
+   final int layers;
+   final int[] N;
+   final LayerWeights[] weights;
+   final Activation[] act;
+   final ThreadLocal<InferenceContext> contexts = ThreadLocal.withInitial(this::newContext);
+
+/*
+* Constructor takes a snapshot of a network's current weights, so the network can keep training
+*
+* @param net the network, with its weights populated
+*/
+   public InferenceModel(Nlayer net)
+   {
+      layers = net.layers;
+      N = net.N.clone();
+      act = net.act.clone();
+
+      weights = new LayerWeights[layers - 1];
+      for (int n = 0; n < layers - 1; n++)
+      {
+         LayerWeights from = net.weights[n];
+         weights[n] = new LayerWeights(from.rows, from.cols);
+         weights[n].parallelRows = from.parallelRows;
+         weights[n].simd = from.simd;
+         System.arraycopy(from.w, 0, weights[n].w, 0, from.w.length);
+         weights[n].csr = from.csr; // never changes, so it can be shared
+      }
+   } // public InferenceModel(Nlayer net)
+
+/*
+* Constructor adopts weights that nothing else holds on to, without copying them
+*
+* @param N the activations per layer
+* @param weights the weights of each connection layer
+* @param act the activation function of each layer
+*/
+   InferenceModel(int[] N, LayerWeights[] weights, Activation[] act)
+   {
+      layers = N.length;
+      this.N = N;
+      this.weights = weights;
+      this.act = act;
+   }
+
+/*
+* load reads the layout, activation functions and weights file named by a control file;
+* the control file's inputs and outputs files are not read
+*
+* @param controlFile the control file
+* @return the model
+*/
+   public static InferenceModel load(String controlFile) throws IOException
+   {
+      Nlayer p = new Nlayer();
+      p.loadConfigParams(controlFile);
+      p.cases = 0;             // no case arrays are needed
+      p.allocateMemoryRun();
+      p.readWeights();
+      p.compressWeights();     // pruned layers run on compressed sparse rows
+
+      return new InferenceModel(p.N, p.weights, p.act);
+   } // public static InferenceModel load(String controlFile) throws IOException
+
+/*
+* inputs gives the number of input activations of a case
+*
+* @return N[0]
+*/
+   public int inputs()
+   {
+      return N[0];
+   }
+
+/*
+* outputs gives the number of output activations of a case
+*
+* @return N[layers - 1]
+*/
+   public int outputs()
+   {
+      return N[layers - 1];
+   }
+
+/*
+* newContext creates scratch space for running cases on one thread
+*
+* @return a new context
+*/
+   public InferenceContext newContext()
+   {
+      return new InferenceContext(this);
+   }
+
+/*
+* context gives the calling thread's own context, created on first use
+*
+* @return the context of the calling thread
+*/
+   public InferenceContext context()
+   {
+      return contexts.get();
+   }
+
+/*
+* run runs one case on the calling thread's context; safe to call from any number of threads at once
+*
+* @param inputs the activations for the first layer
+* @param outputs filled with the output activations
+*/
+   public void run(double[] inputs, double[] outputs)
+   {
+      System.arraycopy(context().run(inputs), 0, outputs, 0, N[layers - 1]);
+   }
+
+} // public final class InferenceModel
@@ -0,0 +1,437 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file serves an N-layer Network over HTTP with the JDK's built-in com.sun.net.httpserver, so the weights are
+* loaded once instead of once per "java Nlayer" run. Requests from many clients are coalesced into micro-batches:
+* a single batcher thread waits for the first queued request, then keeps collecting requests until it has maxBatch
+* cases or maxDelay milliseconds have passed, and runs them all through one InferenceContext.runBatch.
+*
+* POST /predict takes one or more cases and answers with one line of output activations per case.
+*    Content-Type application/octet-stream: raw 8-bit images, N[0] bytes per case, scaled to [0, 1] like pel files
+*    anything else: text, one case per line, the N[0] inputs separated by spaces or commas
+*    A request of more than maxBatch cases is refused with 413; so is a body too long to hold maxBatch cases
+*    (maxBatch * N[0] bytes, or TEXT_BYTES_PER_INPUT times that as text), before it is read in full.
+* GET /health answers with the layout of the network and the number of micro-batches and cases run so far
+*
+* Usage: java InferenceServer [control file] [port] [maxBatch] [maxDelay]
+*        defaults: the default control file, port 8080, 64 cases, 2 milliseconds
+*
+* ==== Methods ====
+* InferenceServer(InferenceModel, int, int, long)
+* start()
+* stop()
+* drain()
+* predict(double[][])
+* handlePredict(HttpExchange)
+* maxBody(boolean)
+* handleHealth(HttpExchange)
+* parseText(byte[])
+* parseBytes(byte[])
+* respond(HttpExchange, int, String)
+* run()
+* main(String[])
+*/
+
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class InferenceServer implements Runnable
+{
+/*
+* HANDLER_THREADS ---- threads accepting requests; they only parse, queue and wait, so the model runs on one thread
+* TEXT_BYTES_PER_INPUT  most bytes an input may take in a text body, room for a full double and its separator
+*/
+   static final int HANDLER_THREADS = 16;
+   static final int TEXT_BYTES_PER_INPUT = 32;
+
+/*
+* model ---- the network being served
+* context -- the batcher thread's scratch space
+* maxBatch - most cases run together in one micro-batch
+* maxDelay - longest a request waits for others to join its micro-batch, in nanoseconds
+* queue ---- requests waiting for the batcher
+* server --- the HTTP server
+* batcher -- the thread running micro-batches
+* handlers - the threads handling requests
+* batches -- micro-batches run so far
+* cases ---- cases run so far
+* stopped -- set by stop, after which queued requests fail instead of waiting for the batcher
+*/
+   final InferenceModel model;
+   final InferenceContext context;
+   final int maxBatch;
+   final long maxDelay;
+   final BlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+   final HttpServer server;
+   final Thread batcher;
+   final ExecutorService handlers;
+   volatile long batches, cases;
+   volatile boolean stopped;
+
+/*
+* Request is the cases of one HTTP request waiting for their outputs
+*
+* inputs --- the cases
+* outputs -- filled by the batcher
+* done ----- completed by the batcher once outputs is filled
+*/
+   static class Request
+   {
+      final double[][] inputs, outputs;
+      final CompletableFuture<double[][]> done = new CompletableFuture<double[][]>();
+
+      Request(double[][] inputs, int outputs)
+      {
+         this.inputs = inputs;
+         this.outputs = new double[inputs.length][outputs];
+      }
+   } // static class Request
+
+/*
+* Constructor binds the server to a port
+*
+* @param model the network to serve
+* @param port the port to listen on
+* @param maxBatch the most cases to run together
+* @param maxDelayMillis the longest a request waits for others to join its micro-batch
+*/
+   public InferenceServer(InferenceModel model, int port, int maxBatch, long maxDelayMillis) throws IOException
+   {
+      this.model = model;
+      this.maxBatch = maxBatch;
+      maxDelay = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+      context = model.newContext();
+
+      server = HttpServer.create(new InetSocketAddress(port), 0);
+      server.createContext("/predict", this::handlePredict);
+      server.createContext("/health", this::handleHealth);
+      handlers = Executors.newFixedThreadPool(HANDLER_THREADS);
+      server.setExecutor(handlers);
+
+      batcher = new Thread(this, "inference-batcher");
+      batcher.setDaemon(true);
+   } // public InferenceServer(InferenceModel model, int port, int maxBatch, long maxDelayMillis)
+
+/*
+* start starts accepting requests
+*/
+   public void start()
+   {
+      batcher.start();
+      server.start();
+   }
+
+/*
+* stop stops accepting requests, stops the batcher and fails every request still waiting for it
+*/
+   public void stop()
+   {
+      stopped = true;
+      server.stop(0);
+      handlers.shutdown();
+      batcher.interrupt();
+      try
+      {
+         batcher.join(); // the batcher fails the micro-batch it was gathering
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+      }
+      drain();
+   } // public void stop()
+
+/*
+* drain fails every queued request, once the batcher is stopped
+*/
+   void drain()
+   {
+      for (Request request = queue.poll(); request != null; request = queue.poll())
+      {
+         request.done.completeExceptionally(new IllegalStateException("The server is stopping"));
+      }
+   }
+
+/*
+* predict queues cases for the next micro-batch and waits for their outputs
+*
+* @param inputs the cases, each of N[0] inputs
+* @return the output activations of every case
+*/
+   public double[][] predict(double[][] inputs) throws InterruptedException, ExecutionException
+   {
+      Request request = new Request(inputs, model.outputs());
+      queue.add(request);
+      if (stopped)
+      {
+         drain(); // queued after stop drained the queue, so nothing would run it
+      }
+      return request.done.get();
+   }
+
+/*
+* handlePredict answers POST /predict
+*/
+   void handlePredict(HttpExchange exchange) throws IOException
+   {
+      try
+      {
+         if (!exchange.getRequestMethod().equals("POST"))
+         {
+            respond(exchange, 405, "Use POST\n");
+            return;
+         }
+
+         String type = exchange.getRequestHeaders().getFirst("Content-Type");
+         boolean bytes = type != null && type.startsWith("application/octet-stream");
+         int limit = maxBody(bytes);
+         byte[] body = exchange.getRequestBody().readNBytes(limit + 1);
+         if (body.length > limit)
+         {
+            respond(exchange, 413, "Body is larger than " + limit + " bytes; send at most " + maxBatch
+                                   + " cases per request\n");
+            return;
+         }
+         double[][] inputs = bytes ? parseBytes(body) : parseText(body);
+         if (inputs.length > maxBatch)
+         {
+            respond(exchange, 413, inputs.length + " cases is more than " + maxBatch + " per request\n");
+            return;
+         }
+
+         double[][] outputs = predict(inputs);
+
+         StringBuilder sb = new StringBuilder();
+         for (double[] out : outputs)
+         {
+            for (int i = 0; i < out.length; i++)
+            {
+               sb.append(i == 0 ? "" : " ").append(out[i]);
+            }
+            sb.append('\n');
+         }
+         respond(exchange, 200, sb.toString());
+      } // try
+      catch (IllegalArgumentException e)
+      {
+         respond(exchange, 400, e.getMessage() + "\n");
+      }
+      catch (InterruptedException | ExecutionException e)
+      {
+         respond(exchange, 500, "Inference failed: " + e + "\n");
+      }
+   } // void handlePredict(HttpExchange exchange) throws IOException
+
+/*
+* maxBody gives the largest request body accepted, room for maxBatch cases
+*
+* @param bytes true for raw 8-bit images, false for text
+* @return the most bytes of a body
+*/
+   int maxBody(boolean bytes)
+   {
+      long limit = (long) maxBatch * model.inputs() * (bytes ? 1 : TEXT_BYTES_PER_INPUT);
+      return (int) Math.min(limit, Integer.MAX_VALUE - 8); // the largest array the JVM allows
+   }
+
+/*
+* handleHealth answers GET /health with the layout of the network and the micro-batches run
+*/
+   void handleHealth(HttpExchange exchange) throws IOException
+   {
+      StringBuilder sb = new StringBuilder("ok");
+      for (int n = 0; n < model.layers; n++)
+      {
+         sb.append(n == 0 ? " " : "-").append(model.N[n]);
+      }
+      sb.append(String.format(", %d micro-batches, %d cases%n", batches, cases));
+      respond(exchange, 200, sb.toString());
+   }
+
+/*
+* parseText reads cases written as text, one case per line
+*
+* @param body the request body
+* @return the cases
+*/
+   double[][] parseText(byte[] body)
+   {
+      List<double[]> cases = new ArrayList<double[]>();
+      BufferedReader br = new BufferedReader(new StringReader(new String(body, StandardCharsets.US_ASCII)));
+      try
+      {
+         for (String line = br.readLine(); line != null; line = br.readLine())
+         {
+            StringTokenizer st = new StringTokenizer(line, " ,\t");
+            if (!st.hasMoreTokens())
+            {
+               continue;
+            }
+            if (st.countTokens() != model.inputs())
+            {
+               throw new IllegalArgumentException("Case " + cases.size() + " has " + st.countTokens()
+                                                  + " inputs, expected " + model.inputs());
+            }
+
+            double[] in = new double[model.inputs()];
+            for (int k = 0; k < in.length; k++)
+            {
+               in[k] = Double.parseDouble(st.nextToken()); // NumberFormatException is an IllegalArgumentException
+            }
+            cases.add(in);
+         } // for (String line = br.readLine(); line != null; line = br.readLine())
+      } // try
+      catch (IOException e)
+      {
+         throw new UncheckedIOException(e); // a StringReader does not throw
+      }
+
+      if (cases.isEmpty())
+      {
+         throw new IllegalArgumentException("No cases in the request");
+      }
+      return cases.toArray(new double[cases.size()][]);
+   } // double[][] parseText(byte[] body)
+
+/*
+* parseBytes reads cases sent as raw 8-bit images, N[0] bytes each
+*
+* @param body the request body
+* @return the cases, scaled to [0, 1]
+*/
+   double[][] parseBytes(byte[] body)
+   {
+      int width = model.inputs();
+      if (body.length == 0 || body.length % width != 0)
+      {
+         throw new IllegalArgumentException("Body of " + body.length + " bytes is not a whole number of "
+                                            + width + "-byte images");
+      }
+
+      double[][] cases = new double[body.length / width][width];
+      for (int c = 0; c < cases.length; c++)
+      {
+         for (int k = 0; k < width; k++)
+         {
+            cases[c][k] = (body[c * width + k] & 0xFF) / 255.0; // 255 is the max value for RGB
+         }
+      }
+      return cases;
+   } // double[][] parseBytes(byte[] body)
+
+/*
+* respond sends a text response and closes the exchange
+*
+* @param exchange the exchange
+* @param status the HTTP status
+* @param text the response body
+*/
+   static void respond(HttpExchange exchange, int status, String text) throws IOException
+   {
+      byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+      exchange.getResponseHeaders().set("Content-Type", "text/plain");
+      exchange.sendResponseHeaders(status, bytes.length);
+      try (OutputStream os = exchange.getResponseBody())
+      {
+         os.write(bytes);
+      }
+   } // static void respond(HttpExchange exchange, int status, String text) throws IOException
+
+/*
+* run is the batcher thread: it gathers queued requests into micro-batches and runs them
+*/
+   public void run()
+   {
+      List<Request> batch = new ArrayList<Request>();
+      double[][] in = new double[maxBatch][];
+      double[][] out = new double[maxBatch][];
+
+      try
+      {
+         while (true)
+         {
+            batch.add(queue.take());
+            int count = batch.get(0).inputs.length;
+            long deadline = System.nanoTime() + maxDelay;
+
+            while (count < maxBatch)
+            {
+               Request next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+               if (next == null)
+               {
+                  break;
+               }
+               batch.add(next);
+               count += next.inputs.length;
+            } // while (count < maxBatch)
+
+            if (count > in.length) // a single large request, or one that overshot maxBatch
+            {
+               in = new double[count][];
+               out = new double[count][];
+            }
+            int row = 0;
+            for (Request request : batch)
+            {
+               for (int c = 0; c < request.inputs.length; c++, row++)
+               {
+                  in[row] = request.inputs[c];
+                  out[row] = request.outputs[c];
+               }
+            }
+
+            try
+            {
+               context.runBatch(in, 0, count, out);
+               batches++;               // only the batcher thread writes these
+               cases += count;
+               for (Request request : batch)
+               {
+                  request.done.complete(request.outputs);
+               }
+            }
+            catch (RuntimeException e)
+            {
+               for (Request request : batch)
+               {
+                  request.done.completeExceptionally(e);
+               }
+            }
+            batch.clear();
+         } // while (true)
+      } // try
+      catch (InterruptedException e)
+      {
+         for (Request request : batch) // taken from the queue but never run
+         {
+            request.done.completeExceptionally(new IllegalStateException("The server is stopping"));
+         }
+      }
+   } // public void run()
+
+/*
+* Main method to load a network and serve it until the process is stopped
+*
+* @param args the control file, the port, the largest micro-batch and the longest delay in milliseconds
+*/
+   public static void main(String[] args) throws IOException
+   {
+      String control = (args.length > 0) ? args[0] : new Nlayer().DEFAULTCONTROL;
+      int port = (args.length > 1) ? Integer.parseInt(args[1]) : 8080;
+      int maxBatch = (args.length > 2) ? Integer.parseInt(args[2]) : 64;
+      long maxDelay = (args.length > 3) ? Long.parseLong(args[3]) : 2;
+
+      InferenceModel model = InferenceModel.load(control);
+      InferenceServer server = new InferenceServer(model, port, maxBatch, maxDelay);
+      server.start();
+
+      System.out.printf("Serving %d-input network from \"%s\" on port %d (micro-batches of up to %d cases, %d ms)%n",
+                        model.inputs(), control, port, maxBatch, maxDelay);
+   } // public static void main(String[] args) throws IOException
+
+} // public class InferenceServer
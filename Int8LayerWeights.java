@@ -0,0 +1,176 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file is the int8 twin of LayerWeights for quantized inference: the weights connecting one layer to the next
+* rounded to signed bytes, row-major by source activation like LayerWeights, with the scale that turns them back
+* into weights, w[k][j] ~ q[k * cols + j] * scale[j]. The scale is either one per layer or one per destination
+* activation (per channel), which keeps a channel with small weights from losing them to a channel with large ones.
+* Each byte replaces an 8-byte double, so a pass over the weights reads an eighth of the memory.
+* forward takes the source activations quantized to bytes as well (see QuantizedNetwork) and sums the products in
+* ints, skipping zero activations. The ints are flushed into longs every INT_ROWS rows so a sum can never overflow,
+* however wide the layer. forwardSparse does the same for an input case given as the positions and quantized values
+* of its nonzero inputs (see SparseVector), visiting only those rows.
+*
+* ==== Methods ====
+* Int8LayerWeights(LayerWeights, boolean)
+* forward(byte[], boolean, long[])
+* forwardSparse(int[], byte[], int, boolean, long[])
+* bytes()
+*/
+
+public class Int8LayerWeights
+{
+/*
+* INT_ROWS - rows whose products always fit in an int: 255 * 127 * INT_ROWS <= Integer.MAX_VALUE
+*/
+   static final int INT_ROWS = Integer.MAX_VALUE / (255 * 127);
+
+/*
+* rows ----- number of source activations
+* cols ----- number of destination activations
+* q -------- the quantized weights, row-major: q[k * cols + j] connects activation k to activation j
+* scale ---- the weight of one step of q for every destination activation (all equal when per layer)
+* acc ------ the int sums of the current block of rows
+*/
+   final int rows, cols;
+   final byte[] q;
+   final double[] scale;
+   final int[] acc;
+
+/*
+* Constructor quantizes a layer symmetrically, mapping the largest magnitude of each scale's weights to 127
+*
+* @param from the double weights
+* @param perChannel true for one scale per destination activation, false for one for the whole layer
+*/
+   public Int8LayerWeights(LayerWeights from, boolean perChannel)
+   {
+      rows = from.rows;
+      cols = from.cols;
+      q = new byte[rows * cols];
+      scale = new double[cols];
+      acc = new int[cols];
+
+      double[] w = from.w;
+      double[] max = new double[cols];
+      for (int ind = 0; ind < w.length; ind++)
+      {
+         int j = ind % cols;
+         max[j] = Math.max(max[j], Math.abs(w[ind]));
+      }
+      if (!perChannel)
+      {
+         double all = 0.0;
+         for (double m : max)
+         {
+            all = Math.max(all, m);
+         }
+         java.util.Arrays.fill(max, all);
+      }
+      for (int j = 0; j < cols; j++)
+      {
+         scale[j] = (max[j] > 0.0) ? max[j] / 127.0 : 1.0;
+      }
+
+      for (int ind = 0; ind < w.length; ind++)
+      {
+         q[ind] = (byte) Math.round(w[ind] / scale[ind % cols]); // within [-127, 127] by the choice of scale
+      }
+   } // public Int8LayerWeights(LayerWeights from, boolean perChannel)
+
+/*
+* forward sums in[k] * q[k][j] over the source activations for every destination activation
+*
+* @param in the quantized source activations (length rows)
+* @param unsigned true if in holds unsigned bytes (0 to 255), false for signed (-127 to 127)
+* @param sum the integer sums (length cols), overwritten
+*/
+   public void forward(byte[] in, boolean unsigned, long[] sum)
+   {
+      for (int j = 0; j < cols; j++)
+      {
+         sum[j] = 0L;
+      }
+
+      for (int lo = 0; lo < rows; lo += INT_ROWS)
+      {
+         int hi = Math.min(rows, lo + INT_ROWS);
+         for (int j = 0; j < cols; j++)
+         {
+            acc[j] = 0;
+         }
+
+         int row = lo * cols;
+         for (int k = lo; k < hi; k++)
+         {
+            int ak = unsigned ? (in[k] & 0xFF) : in[k];
+            if (ak != 0)
+            {
+               for (int j = 0; j < cols; j++)
+               {
+                  acc[j] += ak * q[row + j];
+               }
+            }
+            row += cols;
+         } // for (int k = lo; k < hi; k++)
+
+         for (int j = 0; j < cols; j++)
+         {
+            sum[j] += acc[j];
+         }
+      } // for (int lo = 0; lo < rows; lo += INT_ROWS)
+   } // public void forward(byte[] in, boolean unsigned, long[] sum)
+
+/*
+* forwardSparse sums in[k] * q[k][j] over the source activations listed in index only
+*
+* @param index the positions of the nonzero source activations, increasing
+* @param in the quantized source activations, one per index
+* @param count the number of positions
+* @param unsigned true if in holds unsigned bytes (0 to 255), false for signed (-127 to 127)
+* @param sum the integer sums (length cols), overwritten
+*/
+   public void forwardSparse(int[] index, byte[] in, int count, boolean unsigned, long[] sum)
+   {
+      for (int j = 0; j < cols; j++)
+      {
+         sum[j] = 0L;
+      }
+
+      for (int lo = 0; lo < count; lo += INT_ROWS)
+      {
+         int hi = Math.min(count, lo + INT_ROWS);
+         for (int j = 0; j < cols; j++)
+         {
+            acc[j] = 0;
+         }
+
+         for (int i = lo; i < hi; i++)
+         {
+            int ak = unsigned ? (in[i] & 0xFF) : in[i];
+            int row = index[i] * cols;
+            for (int j = 0; j < cols; j++)
+            {
+               acc[j] += ak * q[row + j];
+            }
+         } // for (int i = lo; i < hi; i++)
+
+         for (int j = 0; j < cols; j++)
+         {
+            sum[j] += acc[j];
+         }
+      } // for (int lo = 0; lo < count; lo += INT_ROWS)
+   } // public void forwardSparse(int[] index, byte[] in, int count, boolean unsigned, long[] sum)
+
+/*
+* bytes gives the memory the weights and scales take
+*
+* @return the size of q plus the size of scale in bytes
+*/
+   public long bytes()
+   {
+      return q.length + 8L * scale.length;
+   }
+
+} // public class Int8LayerWeights
@@ -0,0 +1,646 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file holds the weights connecting one layer of an N-layer Network to the next in a single contiguous array.
+* Weights are stored row-major by source activation, so the weight from activation k to activation j lives at
+* index k * cols + j. This is the same row order used by the weights file, and it lets every kernel below stream
+* through the array once instead of hopping between one small heap array per source activation.
+*
+* Every kernel works on a range of rows, so when a layer has at least parallelRows source activations the kernels
+* hand contiguous blocks of rows to BlockedKernels to run in parallel.
+* When simd is set, each row range is handed to that RowKernels implementation (the Vector API SimdKernels)
+* instead of the scalar loops below.
+*
+* forwardBatch runs a block of cases through the layer at once as a tiled matrix-matrix product: the rows are cut
+* into tiles of about TILE_WEIGHTS weights, small enough to stay in cache, and every case of the block is run
+* through a tile before moving on, so each weight is read from memory once per block instead of once per case.
+* Within a tile, 4 cases are run at a time by forwardBlock (or simd's forwardBlock), which keeps their sums in
+* locals so every weight loaded feeds 4 cases. Every sum still starts from its partial and adds rows in increasing
+* k order, so the results are exactly those of forward.
+*
+* forwardSparse and addOuterSparse take the input case as a SparseVector and visit only its nonzero rows, in
+* increasing k order; a zero row adds nothing, so the results are exactly those of the serial dense kernels.
+* They always run serially (they are meant for the first layer, whose rows are mostly skipped).
+*
+* Once a layer has been pruned (see prune and Pruning), compress keeps a CsrWeights copy of the weights left, and
+* forward and forwardBatch run on that instead of w. The copy is not updated by training, so it is only made for
+* running, and any write to w afterwards must be followed by compress again or by dropping csr.
+*
+* ==== Methods ====
+* LayerWeights(int, int)
+* index(int, int)
+* get(int, int)
+* set(int, int, double)
+* useKernels(RowKernels)
+* isWide()
+* forward(double[], double[])
+* forwardRows(double[], double[], int, int, int)
+* forward(double[], SparseVector, double[])
+* forwardSparse(SparseVector, double[])
+* forwardBatch(double[][], double[][], int)
+* forwardBatchRows(double[][], double[][], int, int, int, int)
+* forwardBlock(double[][], double[][], int, int, int, int)
+* backwardUpdate(double[], double[], double, double[])
+* backwardUpdateRows(double[], double[], double, double[], int, int)
+* backward(double[], double[])
+* backwardRows(double[], double[], int, int)
+* addOuter(double, double[], double[])
+* addOuterRows(double, double[], double[], int, int)
+* addOuter(double, double[], SparseVector, double[])
+* addOuterSparse(double, SparseVector, double[])
+* clear()
+* nonzeros()
+* prune(double)
+* compress(double)
+*/
+
+import java.util.*;
+
+public class LayerWeights
+{
+/*
+* TILE_WEIGHTS - weights per row tile of forwardBatch (128 KB of doubles, about half a typical L2 cache)
+* CSR_WITH_SPARSE - density of compressed weights below which they beat forwardSparse for a sparse input case,
+*                   as measured on the hand images (about 18% nonzero inputs)
+*/
+   static final int TILE_WEIGHTS = 16384;
+   static final double CSR_WITH_SPARSE = 0.1;
+
+/*
+* rows - number of source activations (N[n])
+* cols - number of destination activations (N[n + 1])
+* w ---- the weights, row-major: w[k * cols + j] connects activation k to activation j
+*
+* parallelRows - fan-in at which the kernels split their rows into parallel blocks, 0 to always run serially
+* simd --------- vectorized row kernels to use instead of the scalar loops, or null for scalar; set by useKernels
+* csr ---------- compressed copy of pruned weights that forward runs on instead of w, or null
+*/
+   final int rows, cols;
+   final double[] w;
+   int parallelRows;
+   RowKernels simd;
+   CsrWeights csr;
+
+/*
+* Constructor allocates a zeroed weight store for a rows x cols connection layer
+*
+* @param rows the number of source activations
+* @param cols the number of destination activations
+*/
+   public LayerWeights(int rows, int cols)
+   {
+      this.rows = rows;
+      this.cols = cols;
+      w = new double[rows * cols];
+   }
+
+/*
+* index gives the position of a weight in the flat array
+*
+* @param k the source activation
+* @param j the destination activation
+* @return the index of weight (k, j) in w
+*/
+   public int index(int k, int j)
+   {
+      return k * cols + j;
+   }
+
+/*
+* get returns a single weight
+*
+* @param k the source activation
+* @param j the destination activation
+* @return the weight from k to j
+*/
+   public double get(int k, int j)
+   {
+      return w[k * cols + j];
+   }
+
+/*
+* set assigns a single weight
+*
+* @param k the source activation
+* @param j the destination activation
+* @param value the new weight from k to j
+*/
+   public void set(int k, int j, double value)
+   {
+      w[k * cols + j] = value;
+   }
+
+/*
+* useKernels sets the vectorized row kernels, unless a row is shorter than one vector: the vector loop would never
+* run, and the vectors set up around it are not always removed by the JIT, which then allocates them for every row
+*
+* @param kernels the row kernels, or null for the scalar loops
+*/
+   public void useKernels(RowKernels kernels)
+   {
+      simd = (kernels != null && cols >= kernels.lanes()) ? kernels : null;
+   }
+
+/*
+* isWide tells whether this layer's fan-in is large enough to split across threads
+*
+* @return true if the kernels should run in parallel blocks
+*/
+   public boolean isWide()
+   {
+      return parallelRows > 0 && rows >= parallelRows;
+   }
+
+/*
+* forward computes theta[j] = sum over k of in[k] * w[k][j] for every destination activation
+* Each theta[j] is still summed in increasing k order, so results match the original j-outer loop exactly
+*
+* @param in the source activations (length rows)
+* @param theta the destination accumulator (length cols), overwritten
+*/
+   public void forward(double[] in, double[] theta)
+   {
+      if (csr != null)
+      {
+         csr.forward(in, theta);
+         return;
+      }
+      if (isWide())
+      {
+         BlockedKernels.forward(this, in, theta);
+         return;
+      }
+
+      for (int j = 0; j < cols; j++)
+      {
+         theta[j] = 0.0;
+      }
+      forwardRows(in, theta, 0, 0, rows);
+   } // public void forward(double[] in, double[] theta)
+
+/*
+* forwardRows adds the contribution of rows [lo, hi) to a partial theta
+*
+* @param in the source activations (length rows)
+* @param out the partial accumulator, added to at out[off + j]
+* @param off the offset of the accumulator within out
+* @param lo the first row
+* @param hi one past the last row
+*/
+   public void forwardRows(double[] in, double[] out, int off, int lo, int hi)
+   {
+      if (simd != null)
+      {
+         simd.forwardRows(w, cols, in, out, off, lo, hi);
+         return;
+      }
+
+      int row = lo * cols;
+      for (int k = lo; k < hi; k++)
+      {
+         double ak = in[k];
+         for (int j = 0; j < cols; j++)
+         {
+            out[off + j] += ak * w[row + j];
+         }
+         row += cols;
+      } // for (int k = lo; k < hi; k++)
+   } // public void forwardRows(double[] in, double[] out, int off, int lo, int hi)
+
+/*
+* forward runs forwardSparse when sparse is the sparse form of in, and the dense forward otherwise,
+* so the sparse form of the input case can be passed for every layer
+* With both a sparse input and compressed weights, the compressed rows only win once few enough weights are left
+* (CSR_WITH_SPARSE); otherwise the contiguous rows of forwardSparse are faster
+*
+* @param in the source activations (length rows)
+* @param sparse the sparse form of the input case, or null
+* @param theta the destination accumulator (length cols), overwritten
+*/
+   public void forward(double[] in, SparseVector sparse, double[] theta)
+   {
+      if (sparse != null && sparse.dense == in && csr != null && csr.density() < CSR_WITH_SPARSE)
+      {
+         csr.forward(sparse, theta);
+      }
+      else if (sparse != null && sparse.dense == in)
+      {
+         forwardSparse(sparse, theta);
+      }
+      else
+      {
+         forward(in, theta);
+      }
+   } // public void forward(double[] in, SparseVector sparse, double[] theta)
+
+/*
+* forwardSparse computes theta[j] = sum over the nonzero in[k] of in[k] * w[k][j]
+*
+* @param in the source activations, as index/value pairs
+* @param theta the destination accumulator (length cols), overwritten
+*/
+   public void forwardSparse(SparseVector in, double[] theta)
+   {
+      for (int j = 0; j < cols; j++)
+      {
+         theta[j] = 0.0;
+      }
+      if (simd != null)
+      {
+         simd.forwardSparse(w, cols, in.index, in.value, in.count, theta);
+         return;
+      }
+
+      for (int i = 0; i < in.count; i++)
+      {
+         double ak = in.value[i];
+         int row = in.index[i] * cols;
+         for (int j = 0; j < cols; j++)
+         {
+            theta[j] += ak * w[row + j];
+         }
+      } // for (int i = 0; i < in.count; i++)
+   } // public void forwardSparse(SparseVector in, double[] theta)
+
+/*
+* forwardBatch computes theta[c][j] = sum over k of in[c][k] * w[k][j] for cases c in [0, count)
+* Each theta[c][j] is summed in the same order as forward, so results match running the cases one at a time
+*
+* @param in the source activations of every case (each of length rows)
+* @param theta the destination accumulators of every case (each of length cols), overwritten
+* @param count the number of cases
+*/
+   public void forwardBatch(double[][] in, double[][] theta, int count)
+   {
+      if (csr != null)
+      {
+         for (int c = 0; c < count; c++)
+         {
+            csr.forward(in[c], theta[c]); // each case skips its own zero inputs
+         }
+         return;
+      }
+      if (isWide())
+      {
+         BlockedKernels.forwardBatch(this, in, theta, count);
+         return;
+      }
+
+      for (int c = 0; c < count; c++)
+      {
+         Arrays.fill(theta[c], 0, cols, 0.0);
+      }
+      forwardBatchRows(in, theta, count, 0, 0, rows);
+   } // public void forwardBatch(double[][] in, double[][] theta, int count)
+
+/*
+* forwardBatchRows adds the contribution of rows [lo, hi) to the partial theta of every case, one tile at a time
+*
+* @param in the source activations of every case
+* @param out the partial accumulators of every case, added to at out[c][off + j]
+* @param count the number of cases
+* @param off the offset of the accumulators within each out[c]
+* @param lo the first row
+* @param hi one past the last row
+*/
+   public void forwardBatchRows(double[][] in, double[][] out, int count, int off, int lo, int hi)
+   {
+      int tile = Math.max(1, TILE_WEIGHTS / cols);
+      for (int first = lo; first < hi; first += tile)
+      {
+         int last = Math.min(hi, first + tile);
+         int c = 0;
+         for (; c + 4 <= count; c += 4)
+         {
+            forwardBlock(in, out, c, off, first, last);
+         }
+         for (; c < count; c++)
+         {
+            forwardRows(in[c], out[c], off, first, last); // the tile's weights are still in cache
+         }
+      } // for (int first = lo; first < hi; first += tile)
+   } // public void forwardBatchRows(double[][] in, double[][] out, int count, int off, int lo, int hi)
+
+/*
+* forwardBlock adds rows [lo, hi) to the partial theta of the 4 cases starting at case c, holding 4 cases by 4
+* destination activations of sums in locals
+*
+* @param in the source activations of every case
+* @param out the partial accumulators of every case, added to at out[c][off + j]
+* @param c the first of the 4 cases
+* @param off the offset of the accumulators within each out[c]
+* @param lo the first row
+* @param hi one past the last row
+*/
+   public void forwardBlock(double[][] in, double[][] out, int c, int off, int lo, int hi)
+   {
+      if (simd != null)
+      {
+         simd.forwardBlock(w, cols, in, out, c, off, lo, hi);
+         return;
+      }
+
+      double[] in0 = in[c], in1 = in[c + 1], in2 = in[c + 2], in3 = in[c + 3];
+      double[] o0 = out[c], o1 = out[c + 1], o2 = out[c + 2], o3 = out[c + 3];
+      int j = 0;
+      for (; j + 4 <= cols; j += 4)
+      {
+         int at = off + j;
+         double s00 = o0[at], s01 = o0[at + 1], s02 = o0[at + 2], s03 = o0[at + 3];
+         double s10 = o1[at], s11 = o1[at + 1], s12 = o1[at + 2], s13 = o1[at + 3];
+         double s20 = o2[at], s21 = o2[at + 1], s22 = o2[at + 2], s23 = o2[at + 3];
+         double s30 = o3[at], s31 = o3[at + 1], s32 = o3[at + 2], s33 = o3[at + 3];
+
+         int row = lo * cols + j;
+         for (int k = lo; k < hi; k++)
+         {
+            double w0 = w[row], w1 = w[row + 1], w2 = w[row + 2], w3 = w[row + 3];
+            double a0 = in0[k], a1 = in1[k], a2 = in2[k], a3 = in3[k];
+            s00 += a0 * w0; s01 += a0 * w1; s02 += a0 * w2; s03 += a0 * w3;
+            s10 += a1 * w0; s11 += a1 * w1; s12 += a1 * w2; s13 += a1 * w3;
+            s20 += a2 * w0; s21 += a2 * w1; s22 += a2 * w2; s23 += a2 * w3;
+            s30 += a3 * w0; s31 += a3 * w1; s32 += a3 * w2; s33 += a3 * w3;
+            row += cols;
+         } // for (int k = lo; k < hi; k++)
+
+         o0[at] = s00; o0[at + 1] = s01; o0[at + 2] = s02; o0[at + 3] = s03;
+         o1[at] = s10; o1[at + 1] = s11; o1[at + 2] = s12; o1[at + 3] = s13;
+         o2[at] = s20; o2[at + 1] = s21; o2[at + 2] = s22; o2[at + 3] = s23;
+         o3[at] = s30; o3[at + 1] = s31; o3[at + 2] = s32; o3[at + 3] = s33;
+      } // for (; j + 4 <= cols; j += 4)
+
+      for (; j < cols; j++) // the last cols % 4 destination activations
+      {
+         int at = off + j;
+         double s0 = o0[at], s1 = o1[at], s2 = o2[at], s3 = o3[at];
+         int row = lo * cols + j;
+         for (int k = lo; k < hi; k++)
+         {
+            double wk = w[row];
+            s0 += in0[k] * wk;
+            s1 += in1[k] * wk;
+            s2 += in2[k] * wk;
+            s3 += in3[k] * wk;
+            row += cols;
+         }
+         o0[at] = s0; o1[at] = s1; o2[at] = s2; o3[at] = s3;
+      } // for (; j < cols; j++)
+   } // public void forwardBlock(double[][] in, double[][] out, int c, int off, int lo, int hi)
+
+/*
+* backwardUpdate does one pass over the weights for backpropagation: for every source activation k it
+* accumulates omega[k] = sum over j of psi[j] * w[k][j] using the weights before they change,
+* then applies w[k][j] += scale * a[k] * psi[j]
+*
+* @param psi the psi values of the destination layer (length cols)
+* @param omega the omega accumulator for the source layer (length rows), overwritten
+* @param scale the step size (lambda)
+* @param a the source activations (length rows)
+*/
+   public void backwardUpdate(double[] psi, double[] omega, double scale, double[] a)
+   {
+      if (isWide())
+      {
+         BlockedKernels.backwardUpdate(this, psi, omega, scale, a);
+      }
+      else
+      {
+         backwardUpdateRows(psi, omega, scale, a, 0, rows);
+      }
+   } // public void backwardUpdate(double[] psi, double[] omega, double scale, double[] a)
+
+/*
+* backwardUpdateRows runs backwardUpdate for rows [lo, hi) only
+*/
+   public void backwardUpdateRows(double[] psi, double[] omega, double scale, double[] a, int lo, int hi)
+   {
+      if (simd != null)
+      {
+         simd.backwardUpdateRows(w, cols, psi, omega, scale, a, lo, hi);
+         return;
+      }
+
+      int row = lo * cols;
+      for (int k = lo; k < hi; k++)
+      {
+         double om = 0.0;
+         double step = scale * a[k];
+         for (int j = 0; j < cols; j++)
+         {
+            om         += psi[j] * w[row + j];
+            w[row + j] += step * psi[j];
+         }
+         omega[k] = om;
+         row += cols;
+      } // for (int k = lo; k < hi; k++)
+   } // public void backwardUpdateRows(double[] psi, double[] omega, double scale, double[] a, int lo, int hi)
+
+/*
+* addOuter applies the rank-1 update w[k][j] += scale * a[k] * psi[j]
+*
+* @param scale the step size (lambda)
+* @param a the source activations (length rows)
+* @param psi the psi values of the destination layer (length cols)
+*/
+   public void addOuter(double scale, double[] a, double[] psi)
+   {
+      if (isWide())
+      {
+         BlockedKernels.addOuter(this, scale, a, psi);
+      }
+      else
+      {
+         addOuterRows(scale, a, psi, 0, rows);
+      }
+   } // public void addOuter(double scale, double[] a, double[] psi)
+
+/*
+* addOuterRows runs addOuter for rows [lo, hi) only
+*/
+   public void addOuterRows(double scale, double[] a, double[] psi, int lo, int hi)
+   {
+      if (simd != null)
+      {
+         simd.addOuterRows(w, cols, scale, a, psi, lo, hi);
+         return;
+      }
+
+      int row = lo * cols;
+      for (int k = lo; k < hi; k++)
+      {
+         double step = scale * a[k];
+         for (int j = 0; j < cols; j++)
+         {
+            w[row + j] += step * psi[j];
+         }
+         row += cols;
+      } // for (int k = lo; k < hi; k++)
+   } // public void addOuterRows(double scale, double[] a, double[] psi, int lo, int hi)
+
+/*
+* addOuter runs addOuterSparse when sparse is the sparse form of a, and the dense addOuter otherwise
+*
+* @param scale the step size (lambda)
+* @param a the source activations (length rows)
+* @param sparse the sparse form of the input case, or null
+* @param psi the psi values of the destination layer (length cols)
+*/
+   public void addOuter(double scale, double[] a, SparseVector sparse, double[] psi)
+   {
+      if (sparse != null && sparse.dense == a)
+      {
+         addOuterSparse(scale, sparse, psi);
+      }
+      else
+      {
+         addOuter(scale, a, psi);
+      }
+   } // public void addOuter(double scale, double[] a, SparseVector sparse, double[] psi)
+
+/*
+* addOuterSparse applies w[k][j] += scale * a[k] * psi[j] to the rows of the nonzero a[k] only
+*
+* @param scale the step size (lambda)
+* @param a the source activations, as index/value pairs
+* @param psi the psi values of the destination layer (length cols)
+*/
+   public void addOuterSparse(double scale, SparseVector a, double[] psi)
+   {
+      if (simd != null)
+      {
+         simd.addOuterSparse(w, cols, scale, a.index, a.value, a.count, psi);
+         return;
+      }
+
+      for (int i = 0; i < a.count; i++)
+      {
+         double step = scale * a.value[i];
+         int row = a.index[i] * cols;
+         for (int j = 0; j < cols; j++)
+         {
+            w[row + j] += step * psi[j];
+         }
+      } // for (int i = 0; i < a.count; i++)
+   } // public void addOuterSparse(double scale, SparseVector a, double[] psi)
+
+/*
+* backward accumulates omega[k] = sum over j of psi[j] * w[k][j] without changing the weights
+*
+* @param psi the psi values of the destination layer (length cols)
+* @param omega the omega accumulator for the source layer (length rows), overwritten
+*/
+   public void backward(double[] psi, double[] omega)
+   {
+      if (isWide())
+      {
+         BlockedKernels.backward(this, psi, omega);
+      }
+      else
+      {
+         backwardRows(psi, omega, 0, rows);
+      }
+   } // public void backward(double[] psi, double[] omega)
+
+/*
+* backwardRows runs backward for rows [lo, hi) only
+*/
+   public void backwardRows(double[] psi, double[] omega, int lo, int hi)
+   {
+      if (simd != null)
+      {
+         simd.backwardRows(w, cols, psi, omega, lo, hi);
+         return;
+      }
+
+      int row = lo * cols;
+      for (int k = lo; k < hi; k++)
+      {
+         double om = 0.0;
+         for (int j = 0; j < cols; j++)
+         {
+            om += psi[j] * w[row + j];
+         }
+         omega[k] = om;
+         row += cols;
+      } // for (int k = lo; k < hi; k++)
+   } // public void backwardRows(double[] psi, double[] omega, int lo, int hi)
+
+/*
+* clear sets every weight to zero, used to reset gradient accumulators between batches
+*/
+   public void clear()
+   {
+      Arrays.fill(w, 0.0);
+   }
+
+/*
+* nonzeros counts the weights that are not zero
+*
+* @return the number of nonzero weights
+*/
+   public int nonzeros()
+   {
+      int count = 0;
+      for (double d : w)
+      {
+         if (d != 0.0) count++;
+      }
+      return count;
+   }
+
+/*
+* prune sets the given fraction of the weights with the smallest magnitudes to zero
+*
+* @param fraction the fraction of all the weights to zero, from 0 to 1
+* @return the largest magnitude pruned, or 0 if nothing was
+*/
+   public double prune(double fraction)
+   {
+      int cut = (int) Math.round(fraction * w.length);
+      if (cut <= 0)
+      {
+         return 0.0;
+      }
+
+      double[] magnitude = new double[w.length];
+      for (int ind = 0; ind < w.length; ind++)
+      {
+         magnitude[ind] = Math.abs(w[ind]);
+      }
+      Arrays.sort(magnitude);
+      double threshold = magnitude[Math.min(cut, w.length) - 1];
+
+      int pruned = 0;
+      for (int ind = 0; ind < w.length; ind++) // everything below the threshold first
+      {
+         if (Math.abs(w[ind]) < threshold)
+         {
+            w[ind] = 0.0;
+            pruned++;
+         }
+      }
+      for (int ind = 0; ind < w.length && pruned < cut; ind++) // then ties at the threshold, in order
+      {
+         if (w[ind] != 0.0 && Math.abs(w[ind]) == threshold)
+         {
+            w[ind] = 0.0;
+            pruned++;
+         }
+      }
+      return threshold;
+   } // public double prune(double fraction)
+
+/*
+* compress makes the CsrWeights copy forward runs on, if few enough weights are left to be worth it
+*
+* @param maxDensity the largest fraction of nonzero weights that is compressed
+* @return true if the layer now runs compressed
+*/
+   public boolean compress(double maxDensity)
+   {
+      csr = (maxDensity > 0.0 && nonzeros() <= maxDensity * w.length) ? new CsrWeights(this) : null;
+      return csr != null;
+   }
+
+} // public class LayerWeights
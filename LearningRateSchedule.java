@@ -0,0 +1,164 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file chooses the learning rate (lambda) of every training iteration of an N-layer Network.
+* The schedule starts from the lambda in the control file and is asked for the next rate after every iteration,
+* given the number of iterations done and the average error of the last one.
+*
+* ==== Methods ====
+* LearningRateSchedule(int, double[], double, int)
+* forName(String)
+* rate(int, double)
+* name()
+*/
+
+public class LearningRateSchedule
+{
+/*
+* CONSTANT ---- lambda never changes
+* STEP -------- lambda is multiplied by factor every "every" iterations
+* EXPONENTIAL - lambda is multiplied by gamma every iteration
+* COSINE ------ lambda follows half a cosine from the base rate down to minLambda over maxIter iterations
+* PLATEAU ----- lambda is multiplied by factor (down to minLambda) whenever the average error has not improved
+*               by more than a relative PLATEAU_DELTA for "patience" iterations
+*
+* NAMES ------- the control file names of the schedules, indexed by kind
+*/
+   static final int CONSTANT = 0;
+   static final int STEP = 1;
+   static final int EXPONENTIAL = 2;
+   static final int COSINE = 3;
+   static final int PLATEAU = 4;
+   static final String[] NAMES = {"constant", "step", "exponential", "cosine", "plateau"};
+   static final double PLATEAU_DELTA = 1e-4;
+
+/*
+* kind ------- which schedule this is
+* base ------- the starting lambda
+* maxIter ---- the iteration budget, the period of the cosine schedule
+* every ------ iterations per step (step)
+* factor ----- multiplier per step (step, plateau)
+* gamma ------ multiplier per iteration (exponential)
+* minLambda -- the lowest rate (cosine, plateau)
+* patience --- iterations without improvement before a step (plateau)
+*
+* current ---- the rate in use (plateau)
+* bestError -- the lowest average error seen (plateau)
+* since ------ iterations since bestError improved (plateau)
+*/
+   final int kind;
+   final double base;
+   final int maxIter;
+   int every = 1000, patience = 100;
+   double factor = 0.5, gamma = 0.999, minLambda = 0.0;
+
+   double current;
+   double bestError = Double.MAX_VALUE;
+   int since;
+
+/*
+* Constructor sets up a schedule with its optional control file parameters
+*
+* @param kind CONSTANT, STEP, EXPONENTIAL, COSINE or PLATEAU
+* @param params step: every factor; exponential: gamma; cosine: minLambda; plateau: patience factor minLambda;
+*               missing ones keep their defaults
+* @param base the lambda from the control file
+* @param maxIter the iteration budget from the control file
+*/
+   public LearningRateSchedule(int kind, double[] params, double base, int maxIter)
+   {
+      this.kind = kind;
+      this.base = base;
+      this.maxIter = maxIter;
+      current = base;
+
+      if (kind == STEP)
+      {
+         if (params.length > 0) every = (int) params[0];
+         if (params.length > 1) factor = params[1];
+      }
+      else if (kind == EXPONENTIAL)
+      {
+         if (params.length > 0) gamma = params[0];
+      }
+      else if (kind == COSINE)
+      {
+         if (params.length > 0) minLambda = params[0];
+      }
+      else if (kind == PLATEAU)
+      {
+         if (params.length > 0) patience = (int) params[0];
+         if (params.length > 1) factor = params[1];
+         if (params.length > 2) minLambda = params[2];
+      }
+   } // public LearningRateSchedule(int kind, double[] params, double base, int maxIter)
+
+/*
+* forName looks up a schedule by its control file name
+*
+* @param name constant, step, exponential, cosine or plateau
+* @return the kind of the schedule
+*/
+   public static int forName(String name)
+   {
+      for (int kind = 0; kind < NAMES.length; kind++)
+      {
+         if (NAMES[kind].equals(name))
+         {
+            return kind;
+         }
+      }
+      throw new IllegalArgumentException("Unknown learning rate schedule \"" + name + "\"");
+   } // public static int forName(String name)
+
+/*
+* rate gives the learning rate for the next iteration
+*
+* @param iter the number of iterations done
+* @param avgError the average error of the last iteration
+* @return the next lambda
+*/
+   public double rate(int iter, double avgError)
+   {
+      if (kind == STEP)
+      {
+         return base * Math.pow(factor, iter / every);
+      }
+      else if (kind == EXPONENTIAL)
+      {
+         return base * Math.pow(gamma, iter);
+      }
+      else if (kind == COSINE)
+      {
+         double progress = Math.min(1.0, (double) iter / maxIter);
+         return minLambda + (base - minLambda) * (1.0 + Math.cos(Math.PI * progress)) / 2.0;
+      }
+      else if (kind == PLATEAU)
+      {
+         if (avgError < bestError * (1.0 - PLATEAU_DELTA))
+         {
+            bestError = avgError;
+            since = 0;
+         }
+         else if (++since >= patience)
+         {
+            current = Math.max(minLambda, current * factor);
+            since = 0;
+         }
+         return current;
+      } // else if (kind == PLATEAU)
+      return base;
+   } // public double rate(int iter, double avgError)
+
+/*
+* name gives the control file name of this schedule
+*
+* @return the name
+*/
+   public String name()
+   {
+      return NAMES[kind];
+   }
+
+} // public class LearningRateSchedule
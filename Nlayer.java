@@ -6,36 +6,58 @@
 * This file trains and/or runs an N-layer Network and adheres to the design document provided by Dr. Eric Nelson.
 * Calculation of the error function for training uses gradient descent and is optimized with backpropagation.
 * 
+* Build with javac -encoding UTF-8 *.java. The Vector API kernels (vector true) are in vector/SimdKernels.java,
+* which needs javac --add-modules jdk.incubator.vector (see that file), so they are left out of the plain build.
+* 
 * ==== Methods ====
 * fileToStrArray(String)
 * loadConfigParams(String)
 * loadConfigParams()
 * loadConfigHelper(String[])
+* loadOptionalParam(String, StringTokenizer)
+* loadParamValues(StringTokenizer)
 * echoConfigParams()
 * allocateMemoryTrain()
 * allocateMemoryRun()
 * populateArrays()
+* compressWeights()
+* quantizeWeights()
+* buildSparseInputs()
 * populateInputs()
 * loadInputs()
+* setInput(int, int, double)
 * loadOutputs()
 * readWeights()
 * writeWeights()
 * populateWeightsRandom()
 * setWeightsHardCode()
 * runTrain(int, double[])
+* runTrain(double[], double[])
 * train()
+* startTraining()
+* trainIteration()
+* finishTraining()
+* printKeepAlive()
+* trainEpochOnline()
+* trainCaseOnline(double[], double[])
+* trainEpochBatch()
+* trainCaseBatch(double[], double[])
+* outputError(double[])
+* epochError()
+* trainEpochStream()
+* backpropAccumulate()
+* applyGradients(int)
 * runRun(double[])
 * runCases()
+* runCasesStream()
+* closeStream()
+* runBlock(double[][], SparseVector[], int, int, double[][], int[])
 * printTrainResults()
 * printRunResults()
-* f(double)
-* fDeriv(double)
-* sigmoid(double)
-* sigmoidDeriv(double)
-* hyperbolicTangent(double)
-* hyperbolicTangentDeriv(double)
 * rand(double double)
 * main(String[])
+*
+* Activation functions are applied per layer by the Activation implementations in act
 */
 
 import java.io.*;
@@ -56,11 +78,97 @@ public class Nlayer
 * training - true if training, false if running
 * save ----- true if weights will be saved after, false otherwise
 * weightPopulation - how the weights will be populated: "LOAD" for loading from file, "RAND" for random, "SET" for hard-code
+*
+* Optional parameters, read from "name value(s)" lines after the keep-alive line of the control file
+* batchSize - cases per weight update: 1 for online (default), B for mini-batches of B, 0 for the full batch
+* threads --- training threads: 1 (default) trains on the calling thread, 0 uses every available core
+*             more than one thread shards the cases of each batch across workers, so it needs batchSize != 1
+* parallelWidth - fan-in at which a layer's kernels split into parallel blocks, 0 (default) to stay serial;
+*             only used with a single training thread so the two kinds of parallelism do not compete
+* weightsFormat - format used to save the weights: text (default) for interchange, binary (see BinaryWeights),
+*             or sparse for binary with only the nonzero weights, for pruned networks (see Pruning);
+*             the format of a loaded weights file is detected from its header
+* precision - double (default), or float to train and run on the single-precision FloatNetwork engine, which
+*             loads the cases as floats; the weights stay in double too, for weights files, checkpoints and early
+*             stopping, so only the cases take half the memory. float runs on a single thread without the Vector
+*             API or parallel kernels, so it can be slower than the double engine with vector true
+*             int8 [channel | layer] runs (never trains) on the QuantizedNetwork engine, with per-channel (default)
+*             or per-layer weight scales, and the activation scales that java QuantizedNetwork calibrated on the
+*             training cases and saved next to the weights file; it needs loaded weights and does not work with stream
+* vector ---- true to run the double kernels on the Vector API (SimdKernels), false (default) for scalar loops;
+*             falls back to scalar when the JVM was not started with --add-modules jdk.incubator.vector, and layers
+*             with fewer outputs than one vector holds (RowKernels.lanes) always run the scalar loops
+* activation  how sigmoid and tanh are evaluated: exact (default), table (interpolated lookup table) or rational
+*             (Pade approximant); see FastActivations for the error bounds of the approximations
+* activations the activation function of every layer after the input layer, from sigmoid, tanh, relu,
+*             leakyrelu and linear; a single name applies to every layer, and the default is sigmoid throughout
+* optimizer - the weight update rule and its optional hyperparameters: sgd (default), momentum [mu],
+*             nesterov [mu], rmsprop [rho] or adam [beta1 beta2]; lambda is the learning rate of each.
+*             Anything but sgd updates from accumulated gradients, so batch 1 then steps after every case
+*             but measures each case error before its update; the float engine only supports sgd
+* schedule -- how lambda changes between iterations: constant (default), step [every factor],
+*             exponential [gamma], cosine [minLambda] or plateau [patience factor minLambda]; see LearningRateSchedule
+* earlyStop - patience [minDelta]: stop once avgError has not dropped by minDelta (default 0) for patience
+*             iterations and keep the weights with the lowest avgError; 0 (default) to never stop early
+* stream ---- chunkCases [prefetch]: read the cases of a packed dataset inputs file from disk chunkCases at a time,
+*             keeping at most prefetch (default 2) chunks read ahead, instead of loading every case into memory;
+*             chunks and the cases within them are shuffled every iteration; needs a single double-precision thread
+* runBatch -- cases runCases pushes through each layer together as one matrix-matrix product, 32 by default;
+*             1 runs the cases one at a time. The outputs are the same either way
+* checkpoint  file everyIter [everySeconds]: save the weights and training state to file every everyIter iterations
+*             (0 for never) and every everySeconds seconds (default never), written off the training thread;
+*             the file is also a binary weights file (see Checkpoint)
+* resume ---- file: carry on training from a checkpoint, with its iteration count, optimizer and schedule state
+* metrics --- file: write the phase times, cases per second and errors of every iteration to file, as CSV or as
+*             JSON lines for a .jsonl file; the file is started afresh, or appended to when resuming, and every
+*             iteration is also a JFR event (see TrainingMetrics)
+* allocationFree - true to guarantee that training iterations allocate nothing once the JIT has compiled them:
+*             rejects the options whose iterations allocate (threads, parallelWidth, stream and metrics) and prints
+*             keep-alive messages without formatting; the most bytes allocated by an iteration of the second half is
+*             reported, and if it is not 0 a warning is printed and Nlayer exits with status 1 (see AllocationCheck).
+*             The guarantee only holds once C2 has compiled every path, and the count includes the JVM's one-off work
+*             on the training thread, such as interning a class's string constants when C2 first compiles one of its
+*             methods; in a fresh JVM train for 20000 iterations or more (small layouts take longest), or warm up
+*             with an untimed run first as AllocationCheck does
+* errorPass - how online training measures the error of every case: rerun (default) runs the case again after its
+*             update; fused takes the error from the training run, before the update, saving one forward pass per
+*             case; epoch leaves the cases alone and runs every case once after the iteration, in runBatch blocks,
+*             with the final weights of the iteration (any training mode); epoch does not work with stream
+* sparse ---- maxDensity: input cases with at most this fraction of nonzero inputs run through the first layer as
+*             SparseVectors, skipping the zero inputs, 0.5 by default; 0 keeps every case dense. Not used when
+*             streaming or when the first layer runs on parallel kernels (parallelWidth); the float engine
+*             gathers sparse inputs of its own
+* pruned ---- maxDensity: when running, layers with at most this fraction of nonzero weights, such as those left
+*             by Pruning, run on a compressed sparse row copy (CsrWeights), 0.3 by default; 0 keeps every layer dense
 */
    int cases, maxIter;
    double randMin, randMax, lambda, error;
    boolean training, save;
    int weightPopulation;
+   int batchSize = 1;
+   int threads = 1;
+   int parallelWidth;
+   boolean binaryWeights, sparseWeights;
+   boolean floatPrecision, int8Precision, int8PerChannel;
+   boolean vector;
+   int activationMode = EXACT;
+   String[] activationNames = {"sigmoid"};
+   int optimizerKind = Optimizer.SGD;
+   double[] optimizerParams = new double[0];
+   int scheduleKind = LearningRateSchedule.CONSTANT;
+   double[] scheduleParams = new double[0];
+   int patience;
+   double minDelta;
+   int streamChunk;
+   int streamPrefetch = 2;
+   int runBatch = 32;
+   String checkpointFile, resumeFile, metricsFile;
+   int checkpointIter;
+   double checkpointSeconds;
+   boolean allocationFree;
+   int errorPass = RERUN;
+   double sparseDensity = 0.5;
+   double prunedDensity = 0.3;
 
 /*
 * Declaration of network activations and training-related variables/arrays
@@ -69,28 +177,68 @@ public class Nlayer
 * N ---------- number of activations per layer (length: layers)
 * n ---------- the current layer being worked on (makes progression to N-layer easier)
 * a ---------- 2D array of activation values (length per row x: N[m])
-* weights ---- 3D array of weights (length based on a[])
+* weights ---- one LayerWeights per connection layer; weight (k, j) is stored contiguously at k * N[n + 1] + j
 *
 * theta ------ 2D array of theta values (length per row n: N[n])
 * psi -------- 2D array of psi values   (length per row n: N[n])
 * omega ------ omega value for training
 *
-* thetaRun --- theta accumulator for the running process
-*
 * caseError  - the error for an individual test case of a training iteration
 * totalError - the error for all four cases of a training iteration
 *
-* inputs ----- the inputs of the neural network
+* gradients -- accumulated weight steps (a * psi) for the current batch; not allocated for online sgd
+* optimizer -- applies the accumulated gradients to the weights
+* schedule --- sets lambda after every iteration
+* earlyStop -- stops training once avgError stops improving and keeps the best weights; null when not used
+* stream ----- the source of the cases when streaming, in which case inputs is left empty; null otherwise
+* streamWait - nanoseconds training spent waiting for streamed cases
+* thetaBatch - theta of every layer for each case of a runCases block; allocated by the first batched runCases
+* aBatch ----- activations of every layer for each case of a runCases block; aBatch[0] points at the inputs
+* blockRow --- the row of the inputs behind each case of a runCases block, dense cases first
+* trainer ---- shards the batches of a training run across threads; null when training on one thread
+* checkpoint - saves the training state every so often while training; null when not used
+* metrics ---- times the phases of every iteration and records its errors
+* maxAllocated  the most bytes allocated by an iteration in the second half of training, -1 if not measured
+* keepAliveText and keepAliveBytes - reused to print keep-alive messages in allocationFree mode
+* floatNet --- the single-precision engine when precision is float, created from the weights on first use
+* quantNet --- the int8 engine when precision is int8, quantized with its calibration loaded by quantizeWeights
+* act -------- the activation function of each layer (act[0] is unused, the input layer has none)
+*
+* inputs ----- the inputs of the neural network; empty when streaming or when precision is float
+* floatInputs  the inputs as floats when precision is float, null otherwise
+* sparseInputs the sparse form of every input case, or null for a case that runs dense
+* sparseInput  the sparse form of the case being run, or null; set by the loops over the cases, and only used
+*             by the kernels while a[0] is the dense row it was built from
 * eOutputs --- the expected outputs of the network
 * cOutputs --- the calculated outputs after running the network
 */
    int layers, n;
    int[] N;
    double[][] a;
-   double[][][] weights;
+   LayerWeights[] weights;
    double[][] theta, psi;
+   Activation[] act;
    double caseError, totalError;
+   LayerWeights[] gradients;
+   Optimizer optimizer;
+   LearningRateSchedule schedule;
+   EarlyStopping earlyStop;
+   StreamingDataset stream;
+   long streamWait;
+   double[][][] thetaBatch, aBatch;
+   int[] blockRow;
+   ParallelTrainer trainer;
+   Checkpoint checkpoint;
+   TrainingMetrics metrics;
+   long maxAllocated = -1L;
+   StringBuilder keepAliveText;
+   byte[] keepAliveBytes;
+   FloatNetwork floatNet;
+   QuantizedNetwork quantNet;
    double[][] inputs, eOutputs, cOutputs;
+   float[][] floatInputs;
+   SparseVector[] sparseInputs;
+   SparseVector sparseInput;
 
 /*
 * Instance values for the training process; printed for the user
@@ -108,6 +256,14 @@ public class Nlayer
 * RAND - randomized weights
 * LOAD - load weights from file
 * SET -- hard-code weights with the setWeightshardCode() method
+*
+* EXACT ---- evaluate the activation function with Math.exp
+* TABLE ---- evaluate the activation function with FastActivations' lookup table
+* RATIONAL - evaluate the activation function with FastActivations' rational approximation
+*
+* RERUN ---- measure each case error with a second run after the case's update
+* FUSED ---- measure each case error from its training run, before the case's update
+* EPOCH ---- measure the errors with one run over every case after the iteration
 * 
 * the variables below are for hard-coded weights
 * M ---- layer "M" (inputs)
@@ -118,6 +274,12 @@ public class Nlayer
    final int RAND = 0;
    final int LOAD = 1;
    final int SET  = 2;
+   static final int EXACT    = 0;
+   static final int TABLE    = 1;
+   static final int RATIONAL = 2;
+   static final int RERUN    = 0;
+   static final int FUSED    = 1;
+   static final int EPOCH    = 2;
    final int M = 0;
    final int K = 1;
    final int J = 2;
@@ -128,12 +290,14 @@ public class Nlayer
 *
 * controlFile ---- String to potentially hold the file name for the control file
 * weightsFile ---- String to potentially hold the file name for loaded weights
-* inputsFile ----- String to hold the file name for the inputs array
+* inputsFile ----- String to hold the file name for the inputs array, either a list of pel files or a packed dataset
 * outputsFile ---- String to hold the file name for the eOutputs array
 * newWeightsFile - String to potentially hold the file destination for writing/saving weights
+* packedInputs --- true if the inputs file was a packed dataset, which also holds the expected outputs
 */
    final String DEFAULTCONTROL = "control";
    String controlFile, weightsFile, inputsFile, outputsFile, newWeightsFile;
+   boolean packedInputs;
 
 /*
 * fileToStrArray converts a String file into a String array
@@ -244,8 +408,259 @@ public class Nlayer
       line++;
       st = new StringTokenizer(config[line], " ");
       keepAlive = Integer.parseInt(st.nextToken());
+
+      for (line++; line < config.length; line++) // any remaining lines are optional "name value(s)" parameters
+      {
+         st = new StringTokenizer(config[line], " ");
+         if (st.hasMoreTokens())
+         {
+            loadOptionalParam(st.nextToken(), st);
+         }
+      }
+
+      if (activationNames.length != 1 && activationNames.length != layers - 1)
+      {
+         throw new IllegalArgumentException("activations needs one name, or one per layer after the input layer");
+      }
+      act = new Activation[layers];
+      for (n = 1; n < layers; n++)
+      {
+         act[n] = Activation.forName(activationNames[(activationNames.length == 1) ? 0 : n - 1], activationMode);
+      }
+
+      if (training && threads > 1 && batchSize == 1)
+      {
+         throw new IllegalArgumentException("threads > 1 needs a batch mode (batch 0 or batch B > 1)");
+      }
+      if (streamChunk > 0 && (floatPrecision || threads > 1))
+      {
+         throw new IllegalArgumentException("stream needs precision double and threads 1");
+      }
+      if (floatPrecision && optimizerKind != Optimizer.SGD)
+      {
+         throw new IllegalArgumentException("precision float only supports optimizer sgd");
+      }
+      if (floatPrecision && threads > 1)
+      {
+         throw new IllegalArgumentException("precision float runs on a single thread (threads 1)");
+      }
+      if (allocationFree && (threads > 1 || parallelWidth > 0 || streamChunk > 0 || metricsFile != null))
+      {
+         throw new IllegalArgumentException("allocationFree cannot be used with threads, parallelWidth, stream or "
+                                            + "metrics, whose iterations allocate tasks, queue nodes or text");
+      }
+      if (int8Precision && (training || streamChunk > 0 || weightPopulation != LOAD))
+      {
+         throw new IllegalArgumentException("precision int8 is for running weights loaded from a file, with the "
+                                            + "calibration QuantizedNetwork saved next to them, and not with stream");
+      }
+      if (errorPass == EPOCH && streamChunk > 0)
+      {
+         throw new IllegalArgumentException("errorPass epoch cannot be used with stream, which would read every "
+                                            + "case twice per iteration");
+      }
    } // public void loadConfigHelper(String config[])
 
+/*
+* loadOptionalParam sets a single optional configuration parameter
+* Anything after the values (such as a "<- comment") is ignored
+*
+* @param name the name of the parameter
+* @param st the tokens following the name on the same line
+*/
+   public void loadOptionalParam(String name, StringTokenizer st)
+   {
+      if (name.equals("batch"))
+      {
+         batchSize = Integer.parseInt(st.nextToken());
+         if (batchSize < 0)
+         {
+            throw new IllegalArgumentException("batch must be 0 (full batch) or a positive batch size");
+         }
+      }
+      else if (name.equals("threads"))
+      {
+         threads = Integer.parseInt(st.nextToken());
+         if (threads == 0)
+         {
+            threads = Runtime.getRuntime().availableProcessors();
+         }
+      }
+      else if (name.equals("checkpoint"))
+      {
+         checkpointFile = st.nextToken();
+         double[] values = loadParamValues(st);
+         checkpointIter = (values.length > 0) ? (int) values[0] : 0;
+         checkpointSeconds = (values.length > 1) ? values[1] : 0.0;
+         if (checkpointIter < 0 || checkpointSeconds < 0.0 || (checkpointIter == 0 && checkpointSeconds == 0.0))
+         {
+            throw new IllegalArgumentException("checkpoint needs a file and a positive interval");
+         }
+      }
+      else if (name.equals("pruned"))
+      {
+         prunedDensity = Double.parseDouble(st.nextToken());
+      }
+      else if (name.equals("sparse"))
+      {
+         sparseDensity = Double.parseDouble(st.nextToken());
+      }
+      else if (name.equals("errorPass"))
+      {
+         String pass = st.nextToken();
+         if (pass.equals("rerun"))
+         {
+            errorPass = RERUN;
+         }
+         else if (pass.equals("fused"))
+         {
+            errorPass = FUSED;
+         }
+         else if (pass.equals("epoch"))
+         {
+            errorPass = EPOCH;
+         }
+         else
+         {
+            throw new IllegalArgumentException("errorPass must be rerun, fused or epoch");
+         }
+      }
+      else if (name.equals("allocationFree"))
+      {
+         allocationFree = Boolean.parseBoolean(st.nextToken());
+      }
+      else if (name.equals("metrics"))
+      {
+         metricsFile = st.nextToken();
+      }
+      else if (name.equals("resume"))
+      {
+         resumeFile = st.nextToken();
+      }
+      else if (name.equals("runBatch"))
+      {
+         runBatch = Integer.parseInt(st.nextToken());
+         if (runBatch < 1)
+         {
+            throw new IllegalArgumentException("runBatch must be at least 1");
+         }
+      }
+      else if (name.equals("parallelWidth"))
+      {
+         parallelWidth = Integer.parseInt(st.nextToken());
+      }
+      else if (name.equals("weightsFormat"))
+      {
+         String format = st.nextToken();
+         if (!format.equals("text") && !format.equals("binary") && !format.equals("sparse"))
+         {
+            throw new IllegalArgumentException("weightsFormat must be text, binary or sparse");
+         }
+         binaryWeights = format.equals("binary");
+         sparseWeights = format.equals("sparse");
+      }
+      else if (name.equals("activation"))
+      {
+         String mode = st.nextToken();
+         if (mode.equals("exact"))
+         {
+            activationMode = EXACT;
+         }
+         else if (mode.equals("table"))
+         {
+            activationMode = TABLE;
+         }
+         else if (mode.equals("rational"))
+         {
+            activationMode = RATIONAL;
+         }
+         else
+         {
+            throw new IllegalArgumentException("activation must be exact, table or rational");
+         }
+      }
+      else if (name.equals("activations"))
+      {
+         ArrayList<String> names = new ArrayList<String>();
+         while (st.hasMoreTokens())
+         {
+            String token = st.nextToken();
+            if (token.equals("<-")) break; // the rest of the line is a comment
+            names.add(token);
+         }
+         activationNames = names.toArray(new String[0]);
+      }
+      else if (name.equals("optimizer"))
+      {
+         optimizerKind = Optimizer.forName(st.nextToken());
+         optimizerParams = loadParamValues(st);
+      }
+      else if (name.equals("schedule"))
+      {
+         scheduleKind = LearningRateSchedule.forName(st.nextToken());
+         scheduleParams = loadParamValues(st);
+      }
+      else if (name.equals("stream"))
+      {
+         double[] values = loadParamValues(st);
+         streamChunk = (int) values[0];
+         if (values.length > 1) streamPrefetch = (int) values[1];
+         if (streamChunk < 1 || streamPrefetch < 1)
+         {
+            throw new IllegalArgumentException("stream needs a positive chunk size and prefetch");
+         }
+      }
+      else if (name.equals("earlyStop"))
+      {
+         double[] values = loadParamValues(st);
+         patience = (int) values[0];
+         minDelta = (values.length > 1) ? values[1] : 0.0;
+      }
+      else if (name.equals("vector"))
+      {
+         vector = Boolean.parseBoolean(st.nextToken());
+      }
+      else if (name.equals("precision"))
+      {
+         String precision = st.nextToken();
+         if (!precision.equals("double") && !precision.equals("float") && !precision.equals("int8"))
+         {
+            throw new IllegalArgumentException("precision must be double, float or int8");
+         }
+         floatPrecision = precision.equals("float");
+         int8Precision = precision.equals("int8");
+         int8PerChannel = !(st.hasMoreTokens() && st.nextToken().equals("layer"));
+      }
+      else
+      {
+         throw new IllegalArgumentException("Unknown control file parameter \"" + name + "\"");
+      }
+   } // public void loadOptionalParam(String name, StringTokenizer st)
+
+/*
+* loadParamValues reads the numbers following a parameter name, up to the end of the line or a "<-" comment
+*
+* @param st the tokens following the name
+* @return the numbers
+*/
+   public double[] loadParamValues(StringTokenizer st)
+   {
+      ArrayList<Double> values = new ArrayList<Double>();
+      while (st.hasMoreTokens())
+      {
+         String token = st.nextToken();
+         if (token.equals("<-")) break; // the rest of the line is a comment
+         values.add(Double.parseDouble(token));
+      }
+
+      double[] result = new double[values.size()];
+      for (int ind = 0; ind < result.length; ind++)
+      {
+         result[ind] = values.get(ind);
+      }
+      return result;
+   } // public double[] loadParamValues(StringTokenizer st)
+
 /*
 * echoConfigParams prints configuration parameters prior to training/running
 */
@@ -263,6 +678,61 @@ public class Nlayer
          System.out.printf("Randomly populating weights%n");
       }
       reportWeights();
+
+      if (floatPrecision)
+      {
+         System.out.printf("Single-precision (float) engine%n");
+      }
+      if (int8Precision)
+      {
+         System.out.printf("Int8 quantized engine with per-%s weight scales%n", int8PerChannel ? "channel" : "layer");
+      }
+      if (activationMode != EXACT)
+      {
+         System.out.printf("Activation function: %s approximation%n", (activationMode == TABLE) ? "table" : "rational");
+      }
+      if (activationNames.length > 1 || !activationNames[0].equals("sigmoid"))
+      {
+         System.out.printf("Activation functions:");
+         for (n = 1; n < layers; n++)
+         {
+            System.out.printf(" %s", activationNames[(activationNames.length == 1) ? 0 : n - 1]);
+         }
+         System.out.printf("%n");
+      }
+      if (!floatPrecision && vector)
+      {
+         RowKernels simd = RowKernels.simd();
+         System.out.printf("Vector API kernels: %s%n", (simd != null)
+                           ? "on for layers of at least " + simd.lanes() + " outputs" : "unavailable, using scalar");
+      }
+      else if (!floatPrecision && parallelWidth > 0 && threads == 1)
+      {
+         System.out.printf("Parallel kernels for layers with at least %d inputs%n", parallelWidth);
+      }
+      int sparseCases = 0;
+      double nonzero = 0.0;
+      for (SparseVector sv : sparseInputs)
+      {
+         if (sv != null)
+         {
+            sparseCases++;
+            nonzero += sv.density();
+         }
+      }
+      if (sparseCases > 0)
+      {
+         System.out.printf("Sparse inputs: %d of %d cases, %.1f%% nonzero on average%n", sparseCases, cases,
+                           100.0 * nonzero / sparseCases);
+      }
+      for (n = 0; n < layers - 1; n++)
+      {
+         if (weights[n].csr != null)
+         {
+            System.out.printf("Pruned layer %d runs compressed: %.1f%% of its weights kept%n", n,
+                              100.0 * weights[n].csr.density());
+         }
+      }
       System.out.printf("%nInitializing N-layer network with node layout ");
 
       for (n = 0; n < layers; n++)
@@ -282,6 +752,49 @@ public class Nlayer
          }
 
          System.out.printf("Lambda: %.1f%n", lambda);
+         if (optimizerKind != Optimizer.SGD)
+         {
+            System.out.printf("Optimizer: %s%n", Optimizer.NAMES[optimizerKind]);
+         }
+         if (scheduleKind != LearningRateSchedule.CONSTANT)
+         {
+            System.out.printf("Learning Rate Schedule: %s%n", LearningRateSchedule.NAMES[scheduleKind]);
+         }
+         if (patience > 0)
+         {
+            System.out.printf("Early Stopping Patience: %d%n", patience);
+         }
+         if (resumeFile != null)
+         {
+            System.out.printf("Resuming from \"%s\" at iteration %d%n", resumeFile, iter);
+         }
+         if (checkpointFile != null)
+         {
+            System.out.printf("Checkpoint \"%s\" every %d iterations, %.0f seconds (0 for never)%n",
+                              checkpointFile, checkpointIter, checkpointSeconds);
+         }
+
+         if (batchSize == 1)
+         {
+            System.out.printf("Batch Mode: online%n");
+         }
+         else if (batchSize == 0 || batchSize >= cases)
+         {
+            System.out.printf("Batch Mode: full batch%n");
+         }
+         else
+         {
+            System.out.printf("Batch Mode: mini-batches of %d%n", batchSize);
+         }
+
+         if (threads > 1)
+         {
+            System.out.printf("Training Threads: %d%n", threads);
+         }
+         if (streamChunk > 0)
+         {
+            System.out.printf("Streaming: chunks of %d cases, %d prefetched%n", streamChunk, streamPrefetch);
+         }
          System.out.printf("Error Cutoff: %s%n", error);
 
          System.out.printf("%nTraining...%n%n");
@@ -306,10 +819,13 @@ public class Nlayer
          a[n] = new double[N[n]];
       }
 
-      weights = new double[layers - 1][][];
+      RowKernels simd = vector ? RowKernels.simd() : null;
+      weights = new LayerWeights[layers - 1];
       for (n = 0; n < layers - 1; n++) // no weights for the output (last) layer
       {
-         weights[n] = new double[N[n]][N[n + 1]];
+         weights[n] = new LayerWeights(N[n], N[n + 1]);
+         weights[n].parallelRows = (threads == 1) ? parallelWidth : 0;
+         weights[n].useKernels(simd);
       }
 
       theta = new double[layers][];
@@ -324,10 +840,33 @@ public class Nlayer
          psi[n] = new double[N[n]];
       }
 
-      inputs     = new double[cases][N[0]]; // 0 for input activations
+      inputs     = new double[(streamChunk > 0 || floatPrecision) ? 0 : cases][N[0]]; // 0 for input activations
+      floatInputs  = floatPrecision ? new float[cases][N[0]] : null;  // the float engine's cases
+      sparseInputs = new SparseVector[inputs.length];                 // every case dense until buildSparseInputs
       eOutputs   = new double[cases][N[layers - 1]]; // layers - 1 for output activations
       cOutputs   = new double[cases][N[layers - 1]];
 
+      optimizer = new Optimizer(optimizerKind, optimizerParams, N);
+      schedule = new LearningRateSchedule(scheduleKind, scheduleParams, lambda, maxIter);
+      earlyStop = (patience > 0) ? new EarlyStopping(patience, minDelta, N) : null;
+      metrics = new TrainingMetrics(metricsFile, resumeFile != null);
+      if (allocationFree)
+      {
+         keepAliveText = new StringBuilder(64);
+         keepAliveBytes = new byte[64];
+      }
+
+      if (batchSize != 1 || optimizerKind != Optimizer.SGD)
+      {
+         gradients = new LayerWeights[layers - 1];
+         for (n = 0; n < layers - 1; n++)
+         {
+            gradients[n] = new LayerWeights(N[n], N[n + 1]);
+            gradients[n].parallelRows = weights[n].parallelRows;
+            gradients[n].useKernels(simd);
+         }
+      }
+
       iter = 0;
    } //public void allocateMemoryTrain()
 
@@ -342,13 +881,24 @@ public class Nlayer
          a[n] = new double[N[n]];
       }
 
-      weights = new double[layers - 1][][];
+      RowKernels simd = vector ? RowKernels.simd() : null;
+      weights = new LayerWeights[layers - 1];
       for (n = 0; n < layers - 1; n++) // no weights for the output (last) layer
       {
-         weights[n] = new double[N[n]][N[n + 1]];
+         weights[n] = new LayerWeights(N[n], N[n + 1]);
+         weights[n].parallelRows = (threads == 1) ? parallelWidth : 0;
+         weights[n].useKernels(simd);
+      }
+
+      theta = new double[layers][];
+      for (n = 1; n < layers; n++) // theta is only the forward accumulator when running
+      {
+         theta[n] = new double[N[n]];
       }
 
-      inputs     = new double[cases][N[0]]; // 0 for input activations
+      inputs     = new double[(streamChunk > 0 || floatPrecision) ? 0 : cases][N[0]]; // 0 for input activations
+      floatInputs  = floatPrecision ? new float[cases][N[0]] : null;  // the float engine's cases
+      sparseInputs = new SparseVector[inputs.length];                 // every case dense until buildSparseInputs
       eOutputs   = new double[cases][N[layers - 1]]; // layers - 1 for output activations
       cOutputs   = new double[cases][N[layers - 1]];
    } //public void allocateMemoryRun()
@@ -360,6 +910,7 @@ public class Nlayer
    {
       loadInputs();
       loadOutputs();
+      buildSparseInputs();
 
       if (weightPopulation == LOAD)
       {
@@ -373,13 +924,90 @@ public class Nlayer
       {
          setWeightsHardCode();
       }
+
+      if (training && resumeFile != null)
+      {
+         Checkpoint.restore(resumeFile, this); // replaces the weights and sets iter
+      }
+      if (!training)
+      {
+         compressWeights();
+      }
+      if (int8Precision)
+      {
+         quantizeWeights();
+      }
    } // public void populateArrays()
 
+/*
+* compressWeights gives every layer with at most prunedDensity nonzero weights a CsrWeights copy to run on;
+* for running only, since training does not update the copies
+*/
+   public void compressWeights()
+   {
+      for (n = 0; n < layers - 1; n++)
+      {
+         weights[n].compress((floatPrecision) ? 0.0 : prunedDensity); // the float engine has weights of its own
+      }
+   } // public void compressWeights()
+
+/*
+* quantizeWeights builds the QuantizedNetwork that precision int8 runs on, from the weights and the calibration
+* saved next to the weights file; must be called again whenever the weights change
+*/
+   public void quantizeWeights() throws IOException
+   {
+      String calibration = QuantizedNetwork.calibrationFile(weightsFile);
+      if (!new File(calibration).exists())
+      {
+         throw new FileNotFoundException("\"" + calibration + "\" not found; calibrate the weights on the training "
+                                         + "cases first with java QuantizedNetwork [training control file]");
+      }
+      quantNet = new QuantizedNetwork(this, int8PerChannel);
+      quantNet.readCalibration(calibration);
+   } // public void quantizeWeights() throws IOException
+
+/*
+* buildSparseInputs measures the density of every input case and builds the SparseVector of each case
+* with at most sparseDensity nonzero inputs
+*/
+   public void buildSparseInputs()
+   {
+      if (sparseDensity <= 0.0 || floatPrecision || weights[0].isWide())
+      {
+         return;
+      }
+
+      for (int c = 0; c < inputs.length; c++)
+      {
+         sparseInputs[c] = SparseVector.of(inputs[c], sparseDensity);
+      }
+   } // public void buildSparseInputs()
+
 /*
 * loadInputs loads the inputs array ƒrom an external file
+* A packed dataset (see PackedDataset) is loaded in one read, together with the expected outputs,
+* or opened as a StreamingDataset when streaming
 */
    public void loadInputs() throws IOException
    {
+      packedInputs = PackedDataset.isPacked(inputsFile);
+      if (streamChunk > 0)
+      {
+         stream = new StreamingDataset(inputsFile, streamChunk, streamPrefetch, 1L);
+         if (stream.cases != cases || stream.width != N[0] || stream.outputs != N[layers - 1])
+         {
+            throw new ArrayIndexOutOfBoundsException("Packed dataset does not match configuration parameters");
+         }
+         stream.readLabels(eOutputs);
+         return;
+      }
+      if (packedInputs)
+      {
+         PackedDataset.read(inputsFile, this);
+         return;
+      }
+
       String[] file = fileToStrArray(inputsFile);
       
       StringTokenizer st = new StringTokenizer(file[0], " ");
@@ -391,13 +1019,13 @@ public class Nlayer
          
          FileInputStream fstream = new FileInputStream(st.nextToken());
 
-         // Convert our input stream to a DataInputStream
-         DataInputStream in = new DataInputStream(fstream);
+         // Convert our input stream to a buffered DataInputStream
+         DataInputStream in = new DataInputStream(new BufferedInputStream(fstream));
 
          for (int k = 0; k < N[0]; k++)
          {
             tempInt = (int) in.readInt();
-            inputs[c][k] = ((double) tempInt) / 255.0; // 255 is the max value for RGB
+            setInput(c, k, ((double) tempInt) / 255.0); // 255 is the max value for RGB
          }
 
          in.close();
@@ -405,10 +1033,34 @@ public class Nlayer
    } // public void loadInputs() throws IOException
    
 /*
-* loadOutputs loads the outputs array ƒrom an external file
+* setInput sets one input of a case, into floatInputs when precision is float and into inputs otherwise
+*
+* @param c the case
+* @param k the input activation
+* @param value the input
+*/
+   public void setInput(int c, int k, double value)
+   {
+      if (floatPrecision)
+      {
+         floatInputs[c][k] = (float) value;
+      }
+      else
+      {
+         inputs[c][k] = value;
+      }
+   } // public void setInput(int c, int k, double value)
+
+/*
+* loadOutputs loads the outputs array ƒrom an external file, unless they came with a packed dataset
 */
    public void loadOutputs() throws IOException
    {
+      if (packedInputs)
+      {
+         return;
+      }
+
       String[] file = fileToStrArray(outputsFile);
       
       StringTokenizer st = new StringTokenizer(file[0], " ");
@@ -432,9 +1084,23 @@ public class Nlayer
 
 /*
 * readWeights sets the weight arrays to the weight values in a specified file
+* Binary weights files are memory-mapped by BinaryWeights; anything else is parsed as text
 */
 public void readWeights() throws IOException
 {
+   floatNet = null; // any float copy is now stale
+   quantNet = null;
+   for (LayerWeights lw : weights)
+   {
+      lw.csr = null; // and so is any compressed copy
+   }
+
+   if (BinaryWeights.isBinary(weightsFile))
+   {
+      BinaryWeights.read(weightsFile, N, weights);
+      return;
+   }
+
    String[] file = fileToStrArray(weightsFile);
 
    int line = 0;
@@ -449,26 +1115,35 @@ public void readWeights() throws IOException
 
    for (n = 0; n < layers - 1; n++)
    {
+      double[] w = weights[n].w;
       for (int k = 0; k < N[n]; k++)
       {
          line++;
          st = new StringTokenizer(file[line]," ");
-         int j = 0;
+         int ind = weights[n].index(k, 0); // rows are contiguous, same order as the file
          while (st.hasMoreTokens())
          {
-            weights[n][k][j] = Double.parseDouble(st.nextToken());
-            j++;
+            w[ind] = Double.parseDouble(st.nextToken());
+            ind++;
          }
       } // for (int k = 0; k < N[n]; k++)
    } // for (n = 0; n < layers - 1; n++)
 } // public void readWeights()
 
 /*
-* writeWeights writes the weights array to a specified file
+* writeWeights writes the weights array to a specified file, in binary if weightsFormat is binary
 */
 public void writeWeights() throws IOException
 {
-   if (save)
+   if (save && binaryWeights)
+   {
+      BinaryWeights.write(newWeightsFile, N, weights);
+   }
+   else if (save && sparseWeights)
+   {
+      BinaryWeights.writeSparse(newWeightsFile, N, weights);
+   }
+   else if (save)
    {
       File f = new File(newWeightsFile);
       BufferedWriter bw = new BufferedWriter (new FileWriter(f, false));
@@ -481,11 +1156,14 @@ public void writeWeights() throws IOException
 
       for (n = 0; n < layers - 1; n++)
       {
+         double[] w = weights[n].w;
+         int ind = 0;
          for (int k = 0; k < N[n]; k++)
          {
             for (int j = 0; j < N[n + 1]; j++)
             {
-               bw.write(String.valueOf(weights[n][k][j]) + " ");
+               bw.write(String.valueOf(w[ind]) + " ");
+               ind++;
             }
             bw.newLine();
          }
@@ -501,14 +1179,14 @@ public void writeWeights() throws IOException
 */
    public void populateWeightsRandom()
    {
+      floatNet = null; // any float copy is now stale
+
       for (n = 0; n < layers - 1; n++)
       {
-         for (int k = 0; k < N[n]; k++)
+         double[] w = weights[n].w;
+         for (int ind = 0; ind < w.length; ind++) // row-major, same order as the k then j loops
          {
-            for (int j = 0; j < N[n + 1]; j++)
-            {
-               weights[n][k][j] = rand(randMin, randMax);
-            }
+            w[ind] = rand(randMin, randMax);
          }
       } // for (n = 0; n < layers - 1; n++)
    } // public void populateWeightsRandom()
@@ -527,164 +1205,519 @@ public void writeWeights() throws IOException
       N[n]  = 1;
 
       n = K;
-      weights[n][0][0] = -3.3;
-      weights[n][0][1] = -1.5;
-      weights[n][1][0] = 6.8;
-      weights[n][1][1] = 0.3;
+      weights[n].set(0, 0, -3.3);
+      weights[n].set(0, 1, -1.5);
+      weights[n].set(1, 0, 6.8);
+      weights[n].set(1, 1, 0.3);
       n = J;
-      weights[n][0][0] = 9.1;
-      weights[n][1][0] = -22.5;
+      weights[n].set(0, 0, 9.1);
+      weights[n].set(1, 0, -22.5);
    } // public void setWeightsHardCode
 
 /*
 * runTrain takes in an array of inputs, then runs the network based on current weights; for training purposes
 * 
+* @param caseIter the case, whose expected outputs are used
 * @param inputs the activations for the first layer
 */
    public void runTrain(int caseIter, double[] inputs)
    {
-      double omega;
-      a[0] = inputs; // pointer to the inputs for the specific test case, 0 for input activations
+      runTrain(inputs, eOutputs[caseIter]);
+   }
 
-      for (n = 1; n < layers - 1; n++)
-      {
-         for (int j = 0; j < N[n]; j++)
-         {
-            theta[n][j] = 0.0;
-
-            for (int k = 0; k < N[n - 1]; k++)
-            {
-               theta[n][j] += a[n - 1][k] * weights[n - 1][k][j];
-            }
+/*
+* runTrain runs the network on one case and sets the psi values of the output layer; for training purposes
+* 
+* @param inputs the activations for the first layer
+* @param expected the expected outputs of the case
+*/
+   public void runTrain(double[] inputs, double[] expected)
+   {
+      double omega;
+      a[0] = inputs; // pointer to the inputs for the specific test case, 0 for input activations
 
-            a[n][j] = f(theta[n][j]);
-         } // for (int j = 0; j < N[n]; j++)
-      } // for (n = 1; n < layers - 1; n++)
+      for (n = 1; n < layers - 1; n++)
+      {
+         weights[n - 1].forward(a[n - 1], sparseInput, theta[n]);
+         act[n].forward(theta[n], a[n]);
+      }
 
       n = layers - 1; // layers - 1 (aka I) for output layer
 
+      weights[n - 1].forward(a[n - 1], sparseInput, theta[n]);
+      act[n].forward(theta[n], a[n]);
+
       for (int i = 0; i < N[n]; i++) // i is used for output activation instead of j/k
       {
-         theta[n][i] = 0.0;
+         omega     = expected[i] - a[n][i];  // ωi = (Ti − Fi)
+         psi[n][i] = omega;
+      }
+      act[n].backward(a[n], psi[n]);          // ψ0 = ωi * ƒ'(Θi), from the cached ƒ(Θi)
+   } // public void runTrain(double[] inputs, double[] expected)
+
+/*
+* train uses gradient (steepest) descent to train the network
+* Each iteration is one pass over every case (see trainIteration), until maxIter iterations, the error cutoff,
+* or earlyStop ends training
+*/
+   public void train() throws IOException
+   {
+      boolean stop;
+      startTraining();
+
+      do // while ((iter < maxIter) && (avgError > error) && !stop);
+      {
+         stop = trainIteration();
+      } while ((iter < maxIter) && (avgError > error) && !stop);
+
+      finishTraining();
+   } // public void train() throws IOException
+
+/*
+* startTraining sets up what the iterations of a training run share: the ParallelTrainer's workers, the
+* checkpoint writer and the FloatNetwork; every startTraining must be followed by finishTraining
+*/
+   public void startTraining()
+   {
+      trainer = (threads > 1) ? new ParallelTrainer(this, threads) : null;
+      if (checkpointFile != null)
+      {
+         checkpoint = new Checkpoint(checkpointFile, checkpointIter, checkpointSeconds);
+      }
+      if (floatPrecision && floatNet == null)
+      {
+         floatNet = new FloatNetwork(this);
+      }
+   } // public void startTraining()
+
+/*
+* trainIteration runs one training iteration over every case, either updating after every case or once per batch,
+* with batches optionally sharded across the ParallelTrainer, or run on floats by the FloatNetwork
+* Afterwards the schedule sets lambda, earlyStop records the weights if they are the best yet, and checkpoint saves
+* the training state when one is due
+*
+* @return true if earlyStop says training should stop
+*/
+   public boolean trainIteration() throws IOException
+   {
+      boolean stop = false;
+      double epochLambda = lambda;
+      metrics.startEpoch();
+
+      if (floatPrecision)
+      {
+         floatNet.trainEpoch();
+      }
+      else if (trainer != null)
+      {
+         trainer.trainEpoch();
+      }
+      else if (stream != null)
+      {
+         trainEpochStream();
+      }
+      else if (batchSize == 1 && optimizerKind == Optimizer.SGD)
+      {
+         trainEpochOnline();
+      }
+      else
+      {
+         trainEpochBatch();
+      }
+
+      if (errorPass == EPOCH)
+      {
+         long mark = metrics.mark();
+         totalError = epochError();     // on the FloatNetwork too, through runCases
+         metrics.forward(mark);
+      }
+
+      avgError = totalError / cases; // calculate average error
+      iter++;
+      metrics.endEpoch(iter, avgError, cases, epochLambda);
+
+      if (allocationFree && iter > maxIter / 2)
+      {
+         maxAllocated = Math.max(maxAllocated, metrics.allocated);
+      }
+
+      if ((keepAlive != 0) && (iter % keepAlive == 0)) // iterations is a multiple of keep-alive
+      {
+         if (allocationFree)
+         {
+            printKeepAlive();
+         }
+         else
+         {
+            System.out.printf("Iteration %d, Error = %.17f\n", iter, avgError);
+         }
+      }
 
-         for (int j = 0; j < N[n - 1]; j++) // j here specifically refers to layer before i
+      lambda = schedule.rate(iter, avgError);
+
+      if (earlyStop != null)
+      {
+         if (floatPrecision && earlyStop.improves(avgError))
          {
-            theta[n][i] += a[n - 1][j] * weights[n - 1][j][i];
+            floatNet.storeWeights(); // the best weights are copied from the double weights
          }
-         a[n][i] = f(theta[n][i]);
+         stop = earlyStop.update(iter, avgError, weights);
+      }
 
-         omega  = eOutputs[caseIter][i] - a[n][i];  // ωi = (Ti − Fi)
-         psi[n][i] = omega * fDeriv(theta[n][i]);   // ψ0 = ωi * ƒ'(Θi)
-      } // for (int i = 0; i < N[n]; i++)
-   } // public void runTrain(double[] inputs)
+      if (checkpoint != null && checkpoint.due(iter))
+      {
+         if (floatPrecision)
+         {
+            floatNet.storeWeights(); // a checkpoint holds the double weights
+         }
+         checkpoint.save(this);
+      }
+
+      return stop;
+   } // public boolean trainIteration() throws IOException
 
 /*
-* train uses gradient (steepest) descent to train the network
+* finishTraining stops the workers and the checkpoint writer, closes the metrics file and the stream's read-ahead,
+* brings the double weights up to date, and puts back the weights earlyStop kept
+* The weights early stopping keeps are those after the best iteration, while the error of an iteration is mostly
+* measured as its cases are trained (anything but errorPass epoch), so avgError is measured again on the restored
+* weights
 */
-   public void train()
+   public void finishTraining() throws IOException
    {
-      do // while ((iter < maxIter) && (avgError > error));
+      if (trainer != null)
       {
-         double omega;
-         totalError = 0.0;
-         for (int caseIter = 0; caseIter < inputs.length; caseIter++)
+         trainer.shutdown();
+         trainer = null;
+      }
+      if (checkpoint != null)
+      {
+         checkpoint.finish();
+      }
+      metrics.close();
+      if (stream != null)
+      {
+         stream.cancelPending();
+         streamWait = stream.waitNanos;
+      }
+      if (floatPrecision)
+      {
+         floatNet.storeWeights(); // so the double weights are current for saving
+      }
+
+      if (earlyStop != null && earlyStop.bestIter < iter)
+      {
+         earlyStop.restore(weights);
+         floatNet = null;        // the float copy is stale; runCases converts the restored weights again
+         avgError = epochError() / cases; // bestError may have been measured before the restored weights' updates
+      }
+   } // public void finishTraining() throws IOException
+
+/*
+* printKeepAlive prints the keep-alive message through reused buffers, so it allocates nothing;
+* the error is printed in full instead of to 17 decimal places
+*/
+   public void printKeepAlive()
+   {
+      keepAliveText.setLength(0);
+      keepAliveText.append("Iteration ").append(iter).append(", Error = ").append(avgError).append('\n');
+
+      int length = Math.min(keepAliveText.length(), keepAliveBytes.length);
+      for (int ind = 0; ind < length; ind++)
+      {
+         keepAliveBytes[ind] = (byte) keepAliveText.charAt(ind);
+      }
+      System.out.write(keepAliveBytes, 0, length);
+      System.out.flush();
+   } // public void printKeepAlive()
+
+/*
+* trainEpochOnline runs one iteration of online training, updating the weights after every case
+* The error of each case is measured as errorPass says (see trainCaseOnline)
+*/
+   public void trainEpochOnline()
+   {
+      totalError = 0.0;
+      for (int caseIter = 0; caseIter < inputs.length; caseIter++)
+      {
+         sparseInput = sparseInputs[caseIter];
+         totalError += trainCaseOnline(inputs[caseIter], eOutputs[caseIter]);
+      }
+   } // public void trainEpochOnline()
+
+/*
+* trainCaseOnline trains on one case, updating the weights; with errorPass rerun it then measures the case error
+* with a second run, with fused it takes the error from the training run, and with epoch it measures nothing
+*
+* @param input the activations for the first layer
+* @param expected the expected outputs of the case
+* @return the error of the case after the update (rerun), before the update (fused), or 0 (epoch)
+*/
+   public double trainCaseOnline(double[] input, double[] expected)
+   {
+      caseError = 0.0;
+
+      long mark = metrics.mark();
+      runTrain(input, expected);
+      if (errorPass == FUSED)
+      {
+         caseError = outputError(expected); // before the update below
+      }
+      mark = metrics.forward(mark);
+
+      for (n = layers - 2; n > 0; n--) // layers - 2 is second to last layer (right before output layer)
+      {
+         weights[n].backwardUpdate(psi[n + 1], psi[n], lambda, a[n]); // psi[n] holds the omegas here
+         act[n].backward(a[n], psi[n]); // ψk = Ωk * ƒ'(Θk), from the cached ƒ(Θk)
+      } // for (n = layers - 2; n > 0; n--)
+
+      n = 1; // layer before input (first) layer
+      weights[n - 1].addOuter(lambda, a[n - 1], sparseInput, psi[n]); // one pass over the widest weights
+      mark = metrics.backprop(mark);                     // fused with the update
+
+      if (errorPass == RERUN)
+      {
+         runRun(input);              // run again with updated weights for error calculation
+         caseError = outputError(expected);
+         metrics.forward(mark);
+      }
+
+      if (errorPass != EPOCH)
+      {
+         metrics.caseError(caseError);
+      }
+      return caseError;
+   } // public double trainCaseOnline(double[] input, double[] expected)
+
+/*
+* trainEpochBatch runs one iteration of batch training: gradients are accumulated over batchSize cases
+* (or every case for the full batch) and the weights are stepped once per batch by the mean gradient
+* The weights do not change within a batch, so each case error comes straight from its training run
+*/
+   public void trainEpochBatch()
+   {
+      int batch = (batchSize == 0) ? cases : batchSize;
+      totalError = 0.0;
+
+      for (int start = 0; start < cases; start += batch)
+      {
+         int end = Math.min(start + batch, cases);
+
+         for (int caseIter = start; caseIter < end; caseIter++)
          {
-            caseError = 0.0;
-            
-            runTrain(caseIter, inputs[caseIter]);
+            sparseInput = sparseInputs[caseIter];
+            totalError += trainCaseBatch(inputs[caseIter], eOutputs[caseIter]);
+         }
 
-            for (n = layers - 2; n > 1; n--) // layers - 2 is second to last layer (right before output layer)
-            {
-               for (int k = 0; k < N[n]; k++)
-               {
-                  omega = 0.0;
-   
-                  for (int j = 0; j < N[n + 1]; j++)
-                  {
-                     omega            += psi[n + 1][j] * weights[n][k][j];
-                     weights[n][k][j] += lambda * a[n][k] * psi[n + 1][j];
-                  }
-   
-                  psi[n][k] = omega * fDeriv(theta[n][k]);
-               } // for (int k = 0; k < N[n]; k++)
-            } // for (n = layers - 2; n > 1; n--)
-            
+         applyGradients(end - start);
+      } // for (int start = 0; start < cases; start += batch)
+   } // public void trainEpochBatch()
 
-            n = 1; // layer before input (first) layer
-            for (int k = 0; k < N[n]; k++)
-            {
-               omega = 0.0;
+/*
+* trainCaseBatch runs one case and adds its gradients to those of the batch, without changing the weights
+*
+* @param input the activations for the first layer
+* @param expected the expected outputs of the case
+* @return the error of the case before the batch's update
+*/
+   public double trainCaseBatch(double[] input, double[] expected)
+   {
+      long mark = metrics.mark();
+      runTrain(input, expected);
+      caseError = outputError(expected);
+      mark = metrics.forward(mark);
 
-               for (int j = 0; j < N[n + 1]; j++)
-               {
-                  omega            += psi[n + 1][j] * weights[n][k][j];
-                  weights[n][k][j] += lambda * a[n][k] * psi[n + 1][j];
-               }
+      backpropAccumulate();
+      metrics.backprop(mark);
+      metrics.caseError(caseError);
+      return caseError;
+   } // public double trainCaseBatch(double[] input, double[] expected)
 
-               psi[n][k] = omega * fDeriv(theta[n][k]);
+/*
+* outputError measures the error of the case last run from the output activations
+*
+* @param expected the expected outputs of the case
+* @return the sum of (T - F)^2 / 2 over the outputs
+*/
+   public double outputError(double[] expected)
+   {
+      double omega;
+      double sum = 0.0;
+      n = layers - 1;                // output activations layer (I)
 
-               for (int m = 0; m < N[n - 1]; m++)
-               {
-                  weights[n - 1][m][k] += lambda * a[n - 1][m] * psi[n][k];
-               }
-            } // for (int k = 0; k < N[n]; k++)
+      for (int i = 0; i < N[n]; i++) // i is used here for output activations
+      {
+         omega = expected[i] - a[n][i];
+         sum  += (omega * omega) / 2;
+      }
+      return sum;
+   } // public double outputError(double[] expected)
 
-            runRun(inputs[caseIter]);      // run again with updated weights for error calculation
+/*
+* epochError runs every case with the current weights, through runCases, and measures the total error,
+* for errorPass epoch
+*
+* @return the summed error of every case
+*/
+   public double epochError()
+   {
+      double omega, sum;
+      double total = 0.0;
+      runCases();
+
+      for (int c = 0; c < cases; c++)
+      {
+         sum = 0.0;
+         for (int i = 0; i < N[layers - 1]; i++)
+         {
+            omega = eOutputs[c][i] - cOutputs[c][i];
+            sum  += (omega * omega) / 2;
+         }
+         metrics.caseError(sum);
+         total += sum;
+      } // for (int c = 0; c < cases; c++)
+      return total;
+   } // public double epochError()
+
+/*
+* trainEpochStream trains through one pass over the streamed cases, chunk by chunk as the reader delivers them,
+* online when batch is 1 with SGD, otherwise applying the gradients every batch cases (0 for once per iteration).
+* The next iteration's pass is requested up front, so the reader keeps filling buffers across the iteration boundary
+*/
+   public void trainEpochStream()
+   {
+      boolean online = (batchSize == 1 && optimizerKind == Optimizer.SGD);
+      int batch = (batchSize == 0) ? cases : batchSize;
+      int pending = 0;
+      totalError = 0.0;
 
-            n = layers - 1;                // output activations layer (I)
+      if (stream.pending() == 0)
+      {
+         stream.startEpoch(true);
+      }
+      if (iter + 1 < maxIter)
+      {
+         stream.startEpoch(true); // read ahead for the next iteration; cancelled if training stops first
+      }
 
-            for (int i = 0; i < N[n]; i++) // i is used here for output activations
+      for (StreamingDataset.Chunk chunk = stream.next(); chunk != null; chunk = stream.next())
+      {
+         for (int row = 0; row < chunk.count; row++)
+         {
+            if (online)
+            {
+               totalError += trainCaseOnline(chunk.inputs[row], chunk.eOutputs[row]);
+            }
+            else
             {
-               omega      = eOutputs[caseIter][i] - a[n][i];
-               caseError += (omega * omega) / 2;
+               totalError += trainCaseBatch(chunk.inputs[row], chunk.eOutputs[row]);
+               if (++pending == batch)
+               {
+                  applyGradients(pending);
+                  pending = 0;
+               }
             }
-            totalError += caseError;
-         } // for (int caseIter = 0; caseIter < inputs.length; caseIter++)
+         } // for (int row = 0; row < chunk.count; row++)
+         stream.release(chunk);
+      } // for (StreamingDataset.Chunk chunk = stream.next(); ...)
 
-         avgError = totalError / cases; // calculate average error
-         iter++;
+      if (pending > 0)
+      {
+         applyGradients(pending);
+      }
+   } // public void trainEpochStream()
 
-         if ((keepAlive != 0) && (iter % keepAlive == 0)) // iterations is a multiple of keep-alive
-         {
-            System.out.printf("Iteration %d, Error = %.17f\n", iter, avgError);
-         }
+/*
+* backpropAccumulate propagates psi back through the network after runTrain and adds a * psi for every
+* weight into gradients, leaving the weights themselves unchanged
+*/
+   public void backpropAccumulate()
+   {
+      for (n = layers - 2; n > 0; n--)
+      {
+         gradients[n].addOuter(1.0, a[n], psi[n + 1]);
+         weights[n].backward(psi[n + 1], psi[n]); // psi[n] holds the omegas here
+         act[n].backward(a[n], psi[n]);           // ψk = Ωk * ƒ'(Θk), from the cached ƒ(Θk)
+      } // for (n = layers - 2; n > 0; n--)
 
-      } while ((iter < maxIter) && (avgError > error));
-   } // public void train()
+      gradients[0].addOuter(1.0, a[0], sparseInput, psi[1]);
+   } // public void backpropAccumulate()
 
 /*
-* runRun takes in an array of inputs, then runs the network based on current weights without a theta array
+* applyGradients steps the weights with the optimizer from the mean accumulated gradient, then clears the gradients
+*
+* @param count the number of cases accumulated into the gradients
+*/
+   public void applyGradients(int count)
+   {
+      long mark = metrics.mark();
+      optimizer.step(weights, gradients, lambda, count);
+
+      for (n = 0; n < layers - 1; n++)
+      {
+         gradients[n].clear();
+      }
+      metrics.update(mark);
+   } // public void applyGradients(int count)
+
+/*
+* runRun takes in an array of inputs, then runs the network based on current weights
+* theta is only used as the accumulator for the forward kernel, psi is not touched
 * 
 * @param inputs the activations for the first layer
 */
    public void runRun(double[] inputs)
    {
-      double thetaRun;
       a[0] = inputs; // pointer to the inputs for the specific test case, 0 for input activations
 
       for (n = 1; n < layers; n++)
       {
-         for (int j = 0; j < N[n]; j++)
-         {
-            thetaRun = 0.0;
-
-            for (int k = 0; k < N[n - 1]; k++)
-            {
-               thetaRun += a[n - 1][k] * weights[n - 1][k][j];
-            }
-
-            a[n][j] = f(thetaRun);
-         } // for (int j = 0; j < N[n]; j++)
-      } // for (n = 1; n < layers - 1; n ++)
+         weights[n - 1].forward(a[n - 1], sparseInput, theta[n]);
+         act[n].forward(theta[n], a[n]);
+      }
    } // public void runRun(double[] inputs)
 
 /*
-* runCases runs each test case (row) of the inputs[][] array
+* runCases runs each test case (row) of the inputs[][] array, in blocks of runBatch cases (see runBlock),
+* or on the FloatNetwork when precision is float, or on the QuantizedNetwork when precision is int8
 */
    public void runCases()
    {
+      if (int8Precision)
+      {
+         if (quantNet == null)
+         {
+            throw new IllegalStateException("precision int8 needs quantizeWeights after the weights are loaded");
+         }
+         quantNet.runCases();
+         return;
+      }
+      if (floatPrecision)
+      {
+         if (floatNet == null)
+         {
+            floatNet = new FloatNetwork(this);
+         }
+         floatNet.runCases();
+         return;
+      }
+      if (stream != null)
+      {
+         runCasesStream();
+         return;
+      }
+      if (runBatch > 1)
+      {
+         for (int start = 0; start < cases; start += runBatch)
+         {
+            runBlock(inputs, sparseInputs, start, Math.min(runBatch, cases - start), cOutputs, null);
+         }
+         return;
+      }
+
       for (int ind = 0; ind < cases; ind++)
       {
+         sparseInput = sparseInputs[ind];
          runRun(inputs[ind]);
 
          for (int i = 0; i < N[layers - 1]; i++) // output activations layer (layers - 1)
@@ -694,6 +1727,97 @@ public void writeWeights() throws IOException
       }
    } // public void runCases()
 
+/*
+* runCasesStream runs the network on every streamed case in file order, filling cOutputs, in blocks of runBatch
+*/
+   public void runCasesStream()
+   {
+      stream.startEpoch(false);
+      for (StreamingDataset.Chunk chunk = stream.next(); chunk != null; chunk = stream.next())
+      {
+         for (int row = 0; row < chunk.count; row += runBatch)
+         {
+            runBlock(chunk.inputs, null, row, Math.min(runBatch, chunk.count - row), cOutputs, chunk.index);
+         }
+         stream.release(chunk);
+      }
+   } // public void runCasesStream()
+
+/*
+* closeStream stops the stream's reader thread and closes the packed dataset once every run over the streamed
+* cases is done, after training and the final runCases; it does nothing when not streaming
+*/
+   public void closeStream() throws IOException
+   {
+      if (stream != null)
+      {
+         stream.close();                      // stream stays set for printTrainResults' wait time
+      }
+   } // public void closeStream() throws IOException
+
+/*
+* runBlock runs up to runBatch cases through the network together, one LayerWeights.forwardBatch per layer,
+* so every layer's weights are streamed from memory once for the whole block
+* Cases with a sparse form skip the batch in the first layer and run through forward one at a time, visiting only
+* their nonzero inputs; the block is ordered dense cases first so the rest still run as one batch. Every case gets
+* exactly the theta runRun would give it, so the outputs do not depend on runBatch
+*
+* @param in the inputs of the cases, one row per case
+* @param sparse the sparse form of each row of in, or null for every row dense
+* @param first the first row of the block
+* @param count the number of rows in the block
+* @param out where the calculated outputs go
+* @param index the row of out for each row of in, or null when they line up
+*/
+   public void runBlock(double[][] in, SparseVector[] sparse, int first, int count, double[][] out, int[] index)
+   {
+      if (aBatch == null)
+      {
+         thetaBatch = new double[layers][][];
+         aBatch = new double[layers][][];
+         aBatch[0] = new double[runBatch][];
+         blockRow = new int[runBatch];
+         for (n = 1; n < layers; n++)
+         {
+            thetaBatch[n] = new double[runBatch][N[n]];
+            aBatch[n] = new double[runBatch][N[n]];
+         }
+      } // if (aBatch == null)
+
+      int dense = 0;
+      for (int row = first; row < first + count; row++) // dense cases from the front, sparse cases from the back
+      {
+         int c = (sparse == null || sparse[row] == null) ? dense++ : count - 1 - (row - first - dense);
+         blockRow[c] = row;
+         aBatch[0][c] = in[row];                         // pointers to the inputs of the block's cases
+      }
+
+      weights[0].forwardBatch(aBatch[0], thetaBatch[1], dense);
+      for (int c = dense; c < count; c++)
+      {
+         weights[0].forward(aBatch[0][c], sparse[blockRow[c]], thetaBatch[1][c]);
+      }
+
+      for (n = 1; n < layers; n++)
+      {
+         if (n > 1)
+         {
+            weights[n - 1].forwardBatch(aBatch[n - 1], thetaBatch[n], count);
+         }
+         for (int c = 0; c < count; c++)
+         {
+            act[n].forward(thetaBatch[n][c], aBatch[n][c]);
+         }
+      }
+
+      n = layers - 1;
+      for (int c = 0; c < count; c++)
+      {
+         int row = (index == null) ? blockRow[c] : index[blockRow[c]];
+         System.arraycopy(aBatch[n][c], 0, out[row], 0, N[n]);
+      }
+   } // public void runBlock(double[][] in, SparseVector[] sparse, int first, int count, double[][] out, int[] index)
+
 /*
 * printTrainResults displays total iterations, average error, the inputs, and the expected and calculated outputs
 */
@@ -701,9 +1825,29 @@ public void writeWeights() throws IOException
    {
       if (iter >= maxIter)  System.out.printf("Maximum iterations reached.%n");
       if (avgError < error) System.out.printf("Error cutoff reached.%n");
+      if (earlyStop != null && earlyStop.since >= patience)
+      {
+         System.out.printf("No improvement for %d iterations; kept the weights of iteration %,d.%n",
+                           patience, earlyStop.bestIter);
+      }
 
       System.out.printf("Total Iterations: %,d%n", iter);
-      System.out.printf("Average Error: %.17f%n%n", avgError);
+      System.out.printf("Average Error: %.17f%n", avgError);
+      if (maxAllocated >= 0)
+      {
+         System.out.printf("Most Bytes Allocated by an Iteration in the Second Half: %,d%n", maxAllocated);
+      }
+      if (allocationFree && maxAllocated > 0)
+      {
+         System.err.printf("WARNING: allocationFree training allocated up to %,d bytes in an iteration of the second "
+                           + "half; train for more iterations or run AllocationCheck to find the variant%n",
+                           maxAllocated);
+      }
+      if (stream != null)
+      {
+         System.out.printf("Time Waiting for Streamed Cases: %.1f ms%n", streamWait / 1e6);
+      }
+      System.out.printf("%n");
 
       System.out.printf("Table below in order of: Expected Outputs, Calculated Outputs%n");
       for (int c = 0; c < cases; c++)
@@ -763,7 +1907,8 @@ public void writeWeights() throws IOException
    {
       if (save)
       {
-         System.out.printf("Weights will save to file \"%s\"%n", newWeightsFile);
+         System.out.printf("Weights will save to %s file \"%s\"%n",
+                           binaryWeights ? "binary" : (sparseWeights ? "sparse binary" : "text"), newWeightsFile);
       }
       else
       {
@@ -771,77 +1916,6 @@ public void writeWeights() throws IOException
       }
    } // public void reportWeights()
 
-/*
-* f applies the activation function to the given input
-* 
-* @param input a double value to be operated on
-* @return the result of the activation function on the given input (ie: sigmoid)
-*/
-   public double f(double input)
-   {
-      return sigmoid(input);
-   }
-
-/*
-* fDeriv applies the derivative of the activation function to the given input
-* 
-* @param input a double value to be operated on
-* @return the result of the derivative of the activation function on the given input (ie: sigmoidDeriv)
-*/
-   public double fDeriv(double input)
-   {
-      return sigmoidDeriv(input);
-   }
-
-/*
-* sigmoid applies the sigmoid function to the given input
-* 
-* @param input a double value to be operated on
-* @return the sigmoid function of the input
-*/
-public double sigmoid(double input)
-{
-   return 1.0 / (1.0 + Math.exp(-input));
-}
-
-/*
-* sigmoidDeriv applies the sigmoid derivative to the given input
-* 
-* @param input a double value to be operated on
-* @return the derivative of sigmoid of the input
-*/
-public double sigmoidDeriv(double input)
-{
-   double sig = sigmoid(input); // only need to calculate sigmoid once
-   return sig * (1.0 - sig);
-}
-
-/*
-* hyperbolicTangent applies the hyperbolic tangent function to the given input
-* 
-* @param input a double value to be operated on
-* @return the hyperbolic tangent function of the input
-*/
-public double hyperbolicTangent(double input)
-{
-   double s = (input > 0) ? 1.0 : -1.0;
-   double exp = Math.exp(-s * 2 * input);
-
-   return s * ((1.0 - exp) / (1.0 + exp));
-}
-
-/*
-* hyperbolicTangentDeriv applies the hyperbolic tangent derivative to the given input
-* 
-* @param input a double value to be operated on
-* @return the derivative of the hyperbolic tangent of the input
-*/
-public double hyperbolicTangentDeriv(double input)
-{
-   double hTan = hyperbolicTangent(input);
-   return 1.0 - hTan * hTan; // ƒ'(x) = 1 - ƒ(x) ^ 2
-}
-
 /*
 * rand generates a random value between a range
 *
@@ -879,8 +1953,13 @@ public double hyperbolicTangentDeriv(double input)
          p.echoConfigParams();
          p.train();
          p.runCases(); // run again to set the calculated outputs array
+         p.closeStream();
          p.printTrainResults();
          p.writeWeights();
+         if (p.allocationFree && p.maxAllocated > 0)
+         {
+            System.exit(1); // the weights are kept, but allocationFree failed its guarantee
+         }
       }
       else
       {
@@ -888,6 +1967,7 @@ public double hyperbolicTangentDeriv(double input)
          p.populateArrays();
          p.echoConfigParams();
          p.runCases();
+         p.closeStream();
          p.printRunResults();
          p.writeWeights();
       }
@@ -0,0 +1,315 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file benchmarks the hot paths of the N-layer Network: the forward pass (runRun), one training iteration,
+* saving and loading the weights file in text and binary, and loading the pel input files and a packed dataset.
+* Each benchmark is run for a number of warmup iterations, then timed over measurement iterations of about
+* ITER_MILLIS each, and reported as the mean and standard deviation of the time per operation.
+* Every result is also appended to a CSV report under a run label so runs before and after a change can be compared.
+*
+* Usage: java NlayerBenchmark [label] [report file] [layout ...]
+*        a layout is written with dashes, like the ABCD files: 2-5-5-3 or 54600-10-20-10-5
+*
+* ==== Methods ====
+* createNetwork(int[], int, File)
+* writePelFiles(Nlayer, File)
+* time(Op)
+* measure(String, String, Op)
+* benchmarkLayout(int[])
+* parseLayout(String)
+* main(String[])
+*/
+
+import java.io.*;
+import java.util.*;
+
+public class NlayerBenchmark
+{
+/*
+* DEFAULT_LAYOUTS - the layouts in ABCD/* and the control file, used when none are given
+* WARMUP --------- untimed iterations per benchmark, so the JIT has compiled the hot loops
+* MEASURE -------- timed iterations per benchmark
+* ITER_MILLIS ---- target length of one iteration; the number of operations per iteration is calibrated to it
+* SMALL_CASES ---- training cases for the small layouts, the same as the ABCD files
+* LARGE_CASES ---- training cases for layouts with a wide input layer, the same as PrayHands
+* LARGE_INPUTS --- input width from which a layout counts as large
+*/
+   static final String[] DEFAULT_LAYOUTS = {"2-5-5-3", "2-5-20-3", "2-20-5-3", "2-5-100-3", "54600-10-20-10-5"};
+   static final int WARMUP = 5;
+   static final int MEASURE = 10;
+   static final long ITER_MILLIS = 200;
+   static final int SMALL_CASES = 4;
+   static final int LARGE_CASES = 25;
+   static final int LARGE_INPUTS = 1000;
+
+/*
+* label ---- name of this run in the report
+* report --- CSV file results are appended to
+* dir ------ scratch directory for the weights and pel files
+*/
+   String label;
+   File report, dir;
+
+/*
+* Op is one benchmarked operation
+*/
+   interface Op
+   {
+      void run() throws IOException;
+   }
+
+/*
+* Constructor sets up the report and scratch directory
+*
+* @param label the name of this run
+* @param report the CSV file to append to
+*/
+   public NlayerBenchmark(String label, File report) throws IOException
+   {
+      this.label = label;
+      this.report = report;
+      dir = java.nio.file.Files.createTempDirectory("nlayer-bench").toFile();
+      dir.deleteOnExit();
+   }
+
+/*
+* createNetwork builds a training network for a layout through the regular control file parser,
+* with random weights and random inputs and expected outputs
+*
+* @param N the activations per layer
+* @param cases the number of training cases
+* @param weights the file the weights are saved to and loaded from
+* @return the network, ready to train or run
+*/
+   public Nlayer createNetwork(int[] N, int cases, File weights)
+   {
+      StringBuilder layout = new StringBuilder();
+      for (int n = 0; n < N.length; n++)
+      {
+         layout.append(N[n]).append(' ');
+      }
+
+      String[] config = {
+         String.valueOf(N.length),
+         layout.toString(),
+         "0",                                   // random weights
+         weights.getPath(),
+         "true",                                // training
+         String.valueOf(cases),
+         new File(dir, "inputs").getPath(),
+         new File(dir, "outputs").getPath(),
+         "-1.5 1.5 0.3 0 1",                    // randMin, randMax, lambda, error, one iteration per train()
+         "true",
+         weights.getPath(),
+         "0"
+      };
+
+      Nlayer p = new Nlayer();
+      p.loadConfigHelper(config);
+      p.allocateMemoryTrain();
+      p.populateWeightsRandom();
+
+      Random rand = new Random(N.length * 31L + N[0]);
+      for (int c = 0; c < cases; c++)
+      {
+         for (int k = 0; k < N[0]; k++)
+         {
+            p.inputs[c][k] = rand.nextInt(256) / 255.0;
+         }
+         p.eOutputs[c][c % N[N.length - 1]] = 1.0;
+      }
+      return p;
+   } // public Nlayer createNetwork(int[] N, int cases, File weights)
+
+/*
+* writePelFiles writes the network's inputs as pel files of big-endian ints (like Pray/Int) and the
+* inputs file listing them, so loadInputs can be benchmarked on real files
+*
+* @param p the network whose inputs are written
+* @param sub the directory for the pel files
+*/
+   public void writePelFiles(Nlayer p, File sub) throws IOException
+   {
+      sub.mkdirs();
+      BufferedWriter list = new BufferedWriter(new FileWriter(p.inputsFile));
+
+      for (int c = 0; c < p.cases; c++)
+      {
+         File pel = new File(sub, "case" + c + "Pel.bin");
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(pel)));
+         for (int k = 0; k < p.N[0]; k++)
+         {
+            out.writeInt((int) Math.round(p.inputs[c][k] * 255.0));
+         }
+         out.close();
+         pel.deleteOnExit();
+
+         list.write(pel.getPath());
+         list.newLine();
+      } // for (int c = 0; c < p.cases; c++)
+
+      list.close();
+      new File(p.inputsFile).deleteOnExit();
+   } // public void writePelFiles(Nlayer p, File sub) throws IOException
+
+/*
+* time times an operation: calibrates how many operations fill ITER_MILLIS, runs WARMUP untimed iterations,
+* then MEASURE timed iterations
+*
+* @param op the operation
+* @return the mean and standard deviation of the time per operation in microseconds, and the operations per iteration
+*/
+   public static double[] time(Op op) throws IOException
+   {
+      long ops = 1;
+      long start = System.nanoTime();
+      op.run();
+      long once = Math.max(1, System.nanoTime() - start);
+      ops = Math.max(1, ITER_MILLIS * 1_000_000L / once);
+
+      for (int it = 0; it < WARMUP; it++)
+      {
+         for (long o = 0; o < ops; o++)
+         {
+            op.run();
+         }
+      }
+
+      double[] micros = new double[MEASURE];
+      for (int it = 0; it < MEASURE; it++)
+      {
+         start = System.nanoTime();
+         for (long o = 0; o < ops; o++)
+         {
+            op.run();
+         }
+         micros[it] = (System.nanoTime() - start) / 1000.0 / ops;
+      } // for (int it = 0; it < MEASURE; it++)
+
+      double mean = 0.0;
+      for (double m : micros)
+      {
+         mean += m;
+      }
+      mean /= MEASURE;
+
+      double var = 0.0;
+      for (double m : micros)
+      {
+         var += (m - mean) * (m - mean);
+      }
+      double stddev = Math.sqrt(var / (MEASURE - 1));
+      return new double[] {mean, stddev, ops};
+   } // public static double[] time(Op op) throws IOException
+
+/*
+* measure times an operation (see time), and prints and records the time per operation
+*
+* @param name the name of the benchmark
+* @param layout the layout being benchmarked
+* @param op the operation
+*/
+   public void measure(String name, String layout, Op op) throws IOException
+   {
+      double[] result = time(op);
+      double mean = result[0], stddev = result[1];
+      long ops = (long) result[2];
+
+      System.out.printf("%-18s %-18s %14.3f us/op  +/- %10.3f  (%d ops/iter)%n", layout, name, mean, stddev, ops);
+
+      BufferedWriter bw = new BufferedWriter(new FileWriter(report, true));
+      bw.write(String.format("%s,%s,%s,%.3f,%.3f,%d", label, layout, name, mean, stddev, ops));
+      bw.newLine();
+      bw.close();
+   } // public void measure(String name, String layout, Op op) throws IOException
+
+/*
+* benchmarkLayout runs every benchmark for one layout
+*
+* @param N the activations per layer
+*/
+   public void benchmarkLayout(int[] N) throws IOException
+   {
+      StringBuilder sb = new StringBuilder();
+      for (int n = 0; n < N.length; n++)
+      {
+         sb.append(n == 0 ? "" : "-").append(N[n]);
+      }
+      String layout = sb.toString();
+
+      int cases = (N[0] >= LARGE_INPUTS) ? LARGE_CASES : SMALL_CASES;
+      File weights = new File(dir, layout + "Weights");
+      weights.deleteOnExit();
+      Nlayer p = createNetwork(N, cases, weights);
+
+      measure("forward", layout, () -> p.runRun(p.inputs[0]));
+      measure("trainEpoch", layout, () -> p.trainEpochOnline());
+      measure("runCases", layout, () -> p.runCases());
+      measure("writeWeights", layout, () -> p.writeWeights());
+      measure("readWeights", layout, () -> p.readWeights());
+
+      p.binaryWeights = true;
+      measure("writeBinary", layout, () -> p.writeWeights());
+      measure("readBinary", layout, () -> p.readWeights());
+      p.binaryWeights = false;
+
+      writePelFiles(p, new File(dir, layout));
+      measure("loadInputs", layout, () -> p.loadInputs());
+
+      File packed = new File(dir, layout + ".pack");
+      packed.deleteOnExit();
+      PackedDataset.write(packed.getPath(), p, PackedDataset.UINT8);
+      p.inputsFile = packed.getPath();
+      measure("loadPacked", layout, () -> p.loadInputs());
+   } // public void benchmarkLayout(int[] N) throws IOException
+
+/*
+* parseLayout reads a dashed layout such as 2-5-5-3
+*
+* @param layout the layout
+* @return the activations per layer
+*/
+   public static int[] parseLayout(String layout)
+   {
+      StringTokenizer st = new StringTokenizer(layout, "-");
+      int[] N = new int[st.countTokens()];
+      for (int n = 0; n < N.length; n++)
+      {
+         N[n] = Integer.parseInt(st.nextToken());
+      }
+      return N;
+   }
+
+/*
+* Main method to run the benchmarks
+*
+* @param args the run label, the report file, then the layouts to benchmark
+*/
+   public static void main(String[] args) throws IOException
+   {
+      String label = (args.length > 0) ? args[0] : "run";
+      File report = new File((args.length > 1) ? args[1] : "benchmarks.csv");
+
+      String[] layouts = DEFAULT_LAYOUTS;
+      if (args.length > 2)
+      {
+         layouts = Arrays.copyOfRange(args, 2, args.length);
+      }
+
+      if (!report.exists())
+      {
+         BufferedWriter bw = new BufferedWriter(new FileWriter(report));
+         bw.write("label,layout,benchmark,mean_us,stddev_us,ops_per_iter");
+         bw.newLine();
+         bw.close();
+      }
+
+      NlayerBenchmark bench = new NlayerBenchmark(label, report);
+      for (String layout : layouts)
+      {
+         bench.benchmarkLayout(parseLayout(layout));
+      }
+   } // public static void main(String[] args) throws IOException
+
+} // public class NlayerBenchmark
@@ -0,0 +1,200 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file applies accumulated gradients to the weights of an N-layer Network with one of several optimizers:
+* plain steepest descent (SGD), momentum, Nesterov momentum, RMSProp and Adam.
+* The gradients handed in are the summed a * psi steps of a batch, which already point downhill, so every rule
+* adds to the weights. Per-weight optimizer state (velocities and squared-gradient averages) is kept in one flat
+* double array per connection layer, in the same row-major order as LayerWeights.
+*
+* ==== Methods ====
+* Optimizer(int, double[], int[])
+* forName(String)
+* step(LayerWeights[], LayerWeights[], double, int)
+* stepLayer(double[], double[], double[], double[], double, int)
+* name()
+*/
+
+public class Optimizer
+{
+/*
+* The update rules, with g the batch mean gradient
+* SGD ------ w += lambda * g
+* MOMENTUM - v = mu * v + g, w += lambda * v
+* NESTEROV - v = mu * v + g, w += lambda * (g + mu * v)
+* RMSPROP -- s = rho * s + (1 - rho) * g ^ 2, w += lambda * g / (sqrt(s) + EPSILON)
+* ADAM ----- m = beta1 * m + (1 - beta1) * g, s = beta2 * s + (1 - beta2) * g ^ 2,
+*            w += lambda * (m / (1 - beta1 ^ t)) / (sqrt(s / (1 - beta2 ^ t)) + EPSILON)
+*
+* NAMES ---- the control file names of the optimizers, indexed by kind
+* EPSILON -- keeps RMSProp and Adam from dividing by zero
+*/
+   static final int SGD = 0;
+   static final int MOMENTUM = 1;
+   static final int NESTEROV = 2;
+   static final int RMSPROP = 3;
+   static final int ADAM = 4;
+   static final String[] NAMES = {"sgd", "momentum", "nesterov", "rmsprop", "adam"};
+   static final double EPSILON = 1e-8;
+
+/*
+* kind -- which optimizer this is
+* mu ---- momentum coefficient (momentum and Nesterov)
+* rho --- decay of the squared-gradient average (RMSProp)
+* beta1 - decay of the gradient average (Adam)
+* beta2 - decay of the squared-gradient average (Adam)
+* t ----- number of steps taken, for Adam's bias correction
+* m ----- per-layer velocity (momentum, Nesterov) or gradient average (Adam); null when unused
+* s ----- per-layer squared-gradient average (RMSProp, Adam); null when unused
+*/
+   final int kind;
+   double mu = 0.9, rho = 0.9, beta1 = 0.9, beta2 = 0.999;
+   long t;
+   final double[][] m, s;
+
+/*
+* Constructor sets the hyperparameters and allocates the state for a network layout
+*
+* @param kind SGD, MOMENTUM, NESTEROV, RMSPROP or ADAM
+* @param params optional hyperparameters from the control file: mu for momentum and Nesterov, rho for RMSProp,
+*               beta1 and beta2 for Adam; missing ones keep their defaults
+* @param N the activations per layer
+*/
+   public Optimizer(int kind, double[] params, int[] N)
+   {
+      this.kind = kind;
+
+      if ((kind == MOMENTUM || kind == NESTEROV) && params.length > 0)
+      {
+         mu = params[0];
+      }
+      else if (kind == RMSPROP && params.length > 0)
+      {
+         rho = params[0];
+      }
+      else if (kind == ADAM)
+      {
+         if (params.length > 0) beta1 = params[0];
+         if (params.length > 1) beta2 = params[1];
+      }
+
+      boolean first  = (kind == MOMENTUM || kind == NESTEROV || kind == ADAM);
+      boolean second = (kind == RMSPROP || kind == ADAM);
+      m = first  ? new double[N.length - 1][] : null;
+      s = second ? new double[N.length - 1][] : null;
+      for (int n = 0; n < N.length - 1; n++)
+      {
+         if (first)  m[n] = new double[N[n] * N[n + 1]];
+         if (second) s[n] = new double[N[n] * N[n + 1]];
+      }
+   } // public Optimizer(int kind, double[] params, int[] N)
+
+/*
+* forName looks up an optimizer by its control file name
+*
+* @param name sgd, momentum, nesterov, rmsprop or adam
+* @return the kind of the optimizer
+*/
+   public static int forName(String name)
+   {
+      for (int kind = 0; kind < NAMES.length; kind++)
+      {
+         if (NAMES[kind].equals(name))
+         {
+            return kind;
+         }
+      }
+      throw new IllegalArgumentException("Unknown optimizer \"" + name + "\"");
+   } // public static int forName(String name)
+
+/*
+* step updates every layer's weights from the gradients accumulated over a batch
+*
+* @param weights the weights of each connection layer
+* @param gradients the summed a * psi of each connection layer over the batch
+* @param lambda the learning rate
+* @param count the number of cases summed into the gradients
+*/
+   public void step(LayerWeights[] weights, LayerWeights[] gradients, double lambda, int count)
+   {
+      t++;
+      for (int n = 0; n < weights.length; n++)
+      {
+         stepLayer(weights[n].w, gradients[n].w, (m == null) ? null : m[n], (s == null) ? null : s[n],
+                   lambda, count);
+      }
+   }
+
+/*
+* stepLayer applies the update rule to one layer using the batch mean gradient g / count
+*
+* @param w the weights
+* @param g the summed gradients
+* @param mv the first-moment state of the layer, or null
+* @param sv the second-moment state of the layer, or null
+* @param lambda the learning rate
+* @param count the number of cases summed into the gradients
+*/
+   void stepLayer(double[] w, double[] g, double[] mv, double[] sv, double lambda, int count)
+   {
+      double mean = 1.0 / count;
+      if (kind == SGD)
+      {
+         double scale = lambda / count; // w += lambda * the mean gradient
+         for (int ind = 0; ind < w.length; ind++)
+         {
+            w[ind] += scale * g[ind];
+         }
+      }
+      else if (kind == MOMENTUM)
+      {
+         for (int ind = 0; ind < w.length; ind++)
+         {
+            mv[ind] = mu * mv[ind] + mean * g[ind];
+            w[ind] += lambda * mv[ind];
+         }
+      }
+      else if (kind == NESTEROV)
+      {
+         for (int ind = 0; ind < w.length; ind++)
+         {
+            double gm = mean * g[ind];
+            mv[ind] = mu * mv[ind] + gm;
+            w[ind] += lambda * (gm + mu * mv[ind]);
+         }
+      }
+      else if (kind == RMSPROP)
+      {
+         for (int ind = 0; ind < w.length; ind++)
+         {
+            double gm = mean * g[ind];
+            sv[ind] = rho * sv[ind] + (1.0 - rho) * gm * gm;
+            w[ind] += lambda * gm / (Math.sqrt(sv[ind]) + EPSILON);
+         }
+      }
+      else // ADAM
+      {
+         double c1 = 1.0 - Math.pow(beta1, t);
+         double c2 = 1.0 - Math.pow(beta2, t);
+         for (int ind = 0; ind < w.length; ind++)
+         {
+            double gm = mean * g[ind];
+            mv[ind] = beta1 * mv[ind] + (1.0 - beta1) * gm;
+            sv[ind] = beta2 * sv[ind] + (1.0 - beta2) * gm * gm;
+            w[ind] += lambda * (mv[ind] / c1) / (Math.sqrt(sv[ind] / c2) + EPSILON);
+         }
+      } // else // ADAM
+   } // void stepLayer(double[] w, double[] g, double[] mv, double[] sv, double lambda, int count)
+
+/*
+* name gives the control file name of this optimizer
+*
+* @return the name
+*/
+   public String name()
+   {
+      return NAMES[kind];
+   }
+
+} // public class Optimizer
@@ -0,0 +1,231 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file packs the training cases of an N-layer Network into a single binary file and loads them back in one read.
+* The file starts with a header of little-endian ints: the MAGIC number, the format VERSION, the number of cases,
+* the input width, the number of outputs and the sample type (UINT8 or FLOAT32). The samples of every case follow,
+* as one byte per pel (0 to 255) or as little-endian floats already scaled to [0, 1], then the expected outputs of
+* every case as little-endian doubles, in the same order as the rows of a fingers-style outputs file.
+* Loading maps the file with a FileChannel and copies whole cases out of the map, so there is no per-pel I/O call.
+* Offsets are longs and the file is mapped a WINDOW of whole cases at a time, so datasets over 2 GB load too.
+*
+* Usage: java PackedDataset [control file] [packed file] [uint8 | float]
+*        packs the inputs and outputs files named by the control file into the packed file (uint8 by default);
+*        afterwards the packed file can be named as the inputs file of a control file
+*
+* ==== Methods ====
+* isPacked(String)
+* read(String, Nlayer)
+* write(String, Nlayer, int)
+* main(String[])
+*/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+public class PackedDataset
+{
+/*
+* MAGIC ---- first int of every packed dataset ("NLDS" read as a little-endian int)
+* VERSION -- version of the format written by this class
+* HEADER --- bytes in the header
+* UINT8 ---- samples stored as one unsigned byte per pel
+* FLOAT32 -- samples stored as floats
+* WINDOW --- most bytes of the file mapped at once; a single MappedByteBuffer cannot reach past 2 GB
+*/
+   static final int MAGIC = 0x53444C4E;
+   static final int VERSION = 1;
+   static final int HEADER = 24;
+   static final int UINT8 = 0;
+   static final int FLOAT32 = 1;
+   static final long WINDOW = 1L << 30;
+
+/*
+* isPacked tells whether a file is a packed dataset by checking its magic number
+*
+* @param fileName the file
+* @return true if the file starts with MAGIC
+*/
+   public static boolean isPacked(String fileName) throws IOException
+   {
+      try (FileChannel ch = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ))
+      {
+         ByteBuffer head = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+         while (head.hasRemaining() && ch.read(head) >= 0) { }
+         return !head.hasRemaining() && head.getInt(0) == MAGIC;
+      }
+   } // public static boolean isPacked(String fileName) throws IOException
+
+/*
+* read loads the inputs and expected outputs of a network from a packed dataset
+*
+* @param fileName the packed dataset
+* @param net the network, whose inputs (see Nlayer.setInput) and eOutputs are filled; its cases and layout must
+*            match the file
+*/
+   public static void read(String fileName, Nlayer net) throws IOException
+   {
+      try (FileChannel ch = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ))
+      {
+         if (ch.size() < HEADER)
+         {
+            throw new IOException("\"" + fileName + "\" is not a packed dataset");
+         }
+         MappedByteBuffer head = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+         head.order(ByteOrder.LITTLE_ENDIAN);
+
+         if (head.getInt() != MAGIC)
+         {
+            throw new IOException("\"" + fileName + "\" is not a packed dataset");
+         }
+         int version = head.getInt();
+         if (version != VERSION)
+         {
+            throw new IOException("Unsupported packed dataset version " + version);
+         }
+
+         int cases = head.getInt();
+         int width = head.getInt();
+         int outputs = head.getInt();
+         int type = head.getInt();
+         if (cases != net.cases || width != net.N[0] || outputs != net.N[net.layers - 1])
+         {
+            throw new ArrayIndexOutOfBoundsException("Packed dataset does not match configuration parameters");
+         }
+
+         long sampleBytes = (type == UINT8) ? width : 4L * width;
+         long labelsStart = HEADER + sampleBytes * cases;
+         if (ch.size() < labelsStart + 8L * outputs * cases)
+         {
+            throw new EOFException("Packed dataset \"" + fileName + "\" is truncated");
+         }
+
+         byte[] pels = new byte[width];
+         float[] floats = new float[width];
+         int perWindow = (int) Math.max(1L, Math.min(cases, WINDOW / sampleBytes));
+         for (int first = 0; first < cases; first += perWindow)
+         {
+            int count = Math.min(perWindow, cases - first);
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, HEADER + sampleBytes * first,
+                                          sampleBytes * count);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            FloatBuffer samples = map.asFloatBuffer();
+
+            for (int c = first; c < first + count; c++)
+            {
+               if (type == UINT8)
+               {
+                  map.get(pels);
+                  for (int k = 0; k < width; k++)
+                  {
+                     net.setInput(c, k, (pels[k] & 0xFF) / 255.0); // 255 is the max value for RGB
+                  }
+               }
+               else
+               {
+                  samples.get(floats);
+                  for (int k = 0; k < width; k++)
+                  {
+                     net.setInput(c, k, floats[k]);
+                  }
+               }
+            } // for (int c = first; c < first + count; c++)
+         } // for (int first = 0; first < cases; first += perWindow)
+
+         long labelBytes = 8L * outputs;
+         perWindow = (int) Math.max(1L, Math.min(cases, WINDOW / Math.max(1L, labelBytes)));
+         for (int first = 0; first < cases; first += perWindow)
+         {
+            int count = Math.min(perWindow, cases - first);
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, labelsStart + labelBytes * first,
+                                          labelBytes * count);
+            DoubleBuffer labels = map.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            for (int c = first; c < first + count; c++)
+            {
+               labels.get(net.eOutputs[c]);
+            }
+         }
+      } // try (FileChannel ch = ...)
+   } // public static void read(String fileName, Nlayer net) throws IOException
+
+/*
+* write packs a network's inputs and expected outputs into a dataset file
+*
+* @param fileName the destination file
+* @param net the network, with its inputs and eOutputs loaded
+* @param type UINT8 or FLOAT32
+*/
+   public static void write(String fileName, Nlayer net, int type) throws IOException
+   {
+      int cases = net.cases;
+      int width = net.N[0];
+      int outputs = net.N[net.layers - 1];
+
+      try (FileChannel ch = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                                             StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+      {
+         ByteBuffer head = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+         head.putInt(MAGIC).putInt(VERSION).putInt(cases).putInt(width).putInt(outputs).putInt(type);
+         head.flip();
+         while (head.hasRemaining()) { ch.write(head); }
+
+         ByteBuffer sample = ByteBuffer.allocate((type == UINT8) ? width : 4 * width).order(ByteOrder.LITTLE_ENDIAN);
+         for (int c = 0; c < cases; c++)
+         {
+            sample.clear();
+            for (int k = 0; k < width; k++)
+            {
+               double in = net.inputs[c][k];
+               if (type == UINT8)
+               {
+                  long pel = Math.round(in * 255.0);
+                  if (pel < 0 || pel > 255)
+                  {
+                     throw new IllegalArgumentException("Input " + k + " of case " + c + " does not fit in uint8");
+                  }
+                  sample.put((byte) pel);
+               }
+               else
+               {
+                  sample.putFloat((float) in);
+               }
+            } // for (int k = 0; k < width; k++)
+            sample.flip();
+            while (sample.hasRemaining()) { ch.write(sample); }
+         } // for (int c = 0; c < cases; c++)
+
+         ByteBuffer labels = ByteBuffer.allocate(8 * outputs).order(ByteOrder.LITTLE_ENDIAN);
+         for (int c = 0; c < cases; c++)
+         {
+            labels.clear();
+            labels.asDoubleBuffer().put(net.eOutputs[c]);
+            while (labels.hasRemaining()) { ch.write(labels); }
+         }
+      } // try (FileChannel ch = ...)
+   } // public static void write(String fileName, Nlayer net, int type) throws IOException
+
+/*
+* Main method to pack the inputs and outputs files of a control file
+*
+* @param args the control file, the packed file, and the sample type
+*/
+   public static void main(String[] args) throws IOException
+   {
+      Nlayer net = new Nlayer();
+      net.loadConfigParams((args.length > 0) ? args[0] : net.DEFAULTCONTROL);
+      String packed = (args.length > 1) ? args[1] : net.inputsFile + ".pack";
+      int type = (args.length > 2 && args[2].equals("float")) ? FLOAT32 : UINT8;
+      net.floatPrecision = false; // write packs the double inputs
+
+      net.allocateMemoryRun();
+      net.loadInputs();
+      net.loadOutputs();
+      write(packed, net, type);
+
+      System.out.printf("Packed %d cases of %d inputs into \"%s\"%n", net.cases, net.N[0], packed);
+   } // public static void main(String[] args) throws IOException
+
+} // public class PackedDataset
@@ -0,0 +1,182 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file trains an N-layer Network on several threads by splitting the cases of every batch across workers.
+* Each worker runs its shard of cases with its own TrainContext, then the workers reduce the gradients together,
+* each one summing its own slice of every weight array, and the network applies one update per batch.
+* Results match single-threaded batch training up to the order in which gradient sums are added.
+*
+* ==== Methods ====
+* ParallelTrainer(Nlayer, int)
+* trainEpoch()
+* accumulateShard(int, int, int)
+* reduceSlice(int)
+* shutdown()
+*/
+
+import java.util.concurrent.*;
+
+public class ParallelTrainer
+{
+/*
+* net ------ the network being trained
+* threads -- number of workers
+* pool ----- the workers
+* contexts - one scratch context per worker
+*
+* ACCUMULATE and REDUCE name the two phases the workers run for every batch
+*/
+   final Nlayer net;
+   final int threads;
+   final ForkJoinPool pool;
+   final TrainContext[] contexts;
+
+   static final int ACCUMULATE = 0;
+   static final int REDUCE = 1;
+
+/*
+* Constructor creates the worker pool and one context per worker
+*
+* @param net the network to train, with its gradients already allocated
+* @param threads the number of workers
+*/
+   public ParallelTrainer(Nlayer net, int threads)
+   {
+      this.net = net;
+      this.threads = threads;
+      pool = new ForkJoinPool(threads);
+      contexts = new TrainContext[threads];
+      for (int t = 0; t < threads; t++)
+      {
+         contexts[t] = new TrainContext(net);
+      }
+   } // public ParallelTrainer(Nlayer net, int threads)
+
+/*
+* trainEpoch runs one iteration over every case in batches of net.batchSize (0 for the full batch)
+* and leaves the summed case error in net.totalError
+*/
+   public void trainEpoch()
+   {
+      int cases = net.cases;
+      int batch = (net.batchSize == 0) ? cases : net.batchSize;
+      net.totalError = 0.0;
+
+      for (int start = 0; start < cases; start += batch)
+      {
+         int end = Math.min(start + batch, cases);
+
+         long mark = net.metrics.mark();
+         pool.invoke(new Workers(0, threads, start, end, ACCUMULATE));
+         mark = net.metrics.backprop(mark);    // the workers' forward and backprop passes together
+         pool.invoke(new Workers(0, threads, start, end, REDUCE));
+         net.metrics.update(mark);
+
+         for (int t = 0; t < threads; t++) // fixed order so the error is reproducible
+         {
+            net.totalError += contexts[t].totalError;
+            net.metrics.caseError(contexts[t].maxCaseError);
+            contexts[t].totalError = 0.0;
+            contexts[t].maxCaseError = 0.0;
+         }
+
+         net.applyGradients(end - start);
+      } // for (int start = 0; start < cases; start += batch)
+   } // public void trainEpoch()
+
+/*
+* accumulateShard runs worker t's contiguous share of the cases in [start, end)
+*
+* @param t the worker
+* @param start the first case of the batch
+* @param end one past the last case of the batch
+*/
+   void accumulateShard(int t, int start, int end)
+   {
+      int count = end - start;
+      int lo = start + (int) ((long) count * t / threads);
+      int hi = start + (int) ((long) count * (t + 1) / threads);
+
+      TrainContext ctx = contexts[t];
+      for (int c = lo; c < hi; c++)
+      {
+         ctx.accumulate(net.inputs[c], net.sparseInputs[c], net.eOutputs[c]);
+      }
+   } // void accumulateShard(int t, int start, int end)
+
+/*
+* reduceSlice sums worker t's slice of every gradient array over all contexts into net.gradients
+* and clears that slice in the contexts for the next batch
+*
+* @param t the worker
+*/
+   void reduceSlice(int t)
+   {
+      for (int n = 0; n < net.layers - 1; n++)
+      {
+         double[] sum = net.gradients[n].w;
+         int lo = (int) ((long) sum.length * t / threads);
+         int hi = (int) ((long) sum.length * (t + 1) / threads);
+
+         for (int c = 0; c < threads; c++)
+         {
+            double[] g = contexts[c].gradients[n].w;
+            for (int ind = lo; ind < hi; ind++)
+            {
+               sum[ind] += g[ind];
+               g[ind] = 0.0;
+            }
+         } // for (int c = 0; c < threads; c++)
+      } // for (int n = 0; n < net.layers - 1; n++)
+   } // void reduceSlice(int t)
+
+/*
+* shutdown stops the workers once training is finished
+*/
+   public void shutdown()
+   {
+      pool.shutdown();
+   }
+
+/*
+* Workers splits the range of workers [lo, hi) in half until each task holds a single worker,
+* then runs that worker's part of the current phase
+*/
+   class Workers extends RecursiveAction
+   {
+      private static final long serialVersionUID = 1L; // ForkJoinTask is Serializable; Workers are never serialized
+
+      final int lo, hi, start, end, phase;
+
+      Workers(int lo, int hi, int start, int end, int phase)
+      {
+         this.lo = lo;
+         this.hi = hi;
+         this.start = start;
+         this.end = end;
+         this.phase = phase;
+      }
+
+      protected void compute()
+      {
+         if (hi - lo == 1)
+         {
+            if (phase == ACCUMULATE)
+            {
+               accumulateShard(lo, start, end);
+            }
+            else
+            {
+               reduceSlice(lo);
+            }
+         } // if (hi - lo == 1)
+         else
+         {
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new Workers(lo, mid, start, end, phase), new Workers(mid, hi, start, end, phase));
+         }
+      } // protected void compute()
+   } // class Workers extends RecursiveAction
+
+} // public class ParallelTrainer
@@ -0,0 +1,212 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file prunes a trained N-layer Network by magnitude: in every connection layer it sets the given fraction of
+* the weights with the smallest magnitudes to zero, optionally fine-tunes the weights left for some iterations, and
+* saves the result as a sparse binary weights file (see BinaryWeights.writeSparse), which holds only the weights
+* kept. When the saved weights are run, the pruned layers run on compressed sparse rows (see CsrWeights and the
+* pruned control file parameter).
+* Fine-tuning is one training run with the control file's training options (see Nlayer.trainIteration) that sets the
+* pruned weights back to zero after every iteration, so the network recovers with the weights it keeps.
+* The average error is reported before pruning, after pruning and after fine-tuning, with the size of the saved
+* file and the time per case of the forward pass on the dense and on the compressed weights.
+*
+* Usage: java Pruning [control file] [fractions] [fine-tune iterations] [pruned weights file]
+*        the control file is a training control file that loads the trained weights; fractions is one fraction per
+*        connection layer separated by commas (0.9,0,0,0), and layers not listed are not pruned
+*
+* ==== Methods ====
+* Pruning(Nlayer)
+* prune(double[])
+* restoreMask()
+* fineTune(int)
+* averageError()
+* timeForward(int)
+* main(String[])
+*/
+
+import java.io.*;
+import java.util.*;
+
+public class Pruning
+{
+/*
+* TIMING_RUNS - passes over the cases when timing the forward pass, after as many to warm up
+*
+* net ------ the network being pruned
+* kept ----- for every connection layer, true for each weight kept, in the row-major order of LayerWeights
+*/
+   static final int TIMING_RUNS = 200;
+
+   final Nlayer net;
+   final boolean[][] kept;
+
+/*
+* Constructor takes a network that has its cases and trained weights loaded
+*
+* @param net the network
+*/
+   public Pruning(Nlayer net)
+   {
+      this.net = net;
+      kept = new boolean[net.layers - 1][];
+   }
+
+/*
+* prune zeroes the smallest weights of every layer and records which weights were kept
+*
+* @param fractions the fraction of every connection layer's weights to zero; missing layers are not pruned
+*/
+   public void prune(double[] fractions)
+   {
+      for (int n = 0; n < net.layers - 1; n++)
+      {
+         LayerWeights lw = net.weights[n];
+         if (n < fractions.length)
+         {
+            lw.prune(fractions[n]);
+         }
+
+         kept[n] = new boolean[lw.w.length];
+         for (int ind = 0; ind < lw.w.length; ind++)
+         {
+            kept[n][ind] = lw.w[ind] != 0.0;
+         }
+      } // for (int n = 0; n < net.layers - 1; n++)
+   } // public void prune(double[] fractions)
+
+/*
+* restoreMask sets every weight that was pruned back to zero
+*/
+   public void restoreMask()
+   {
+      for (int n = 0; n < net.layers - 1; n++)
+      {
+         double[] w = net.weights[n].w;
+         for (int ind = 0; ind < w.length; ind++)
+         {
+            if (!kept[n][ind]) w[ind] = 0.0;
+         }
+      }
+   } // public void restoreMask()
+
+/*
+* fineTune trains the pruned network as one training run of up to iterations (at least 1) iterations, restoring
+* the mask after each; the run ends early at the error cutoff or when earlyStop says so, and the weights earlyStop restores are
+* masked again
+*
+* @param iterations the iterations to train
+*/
+   public void fineTune(int iterations) throws IOException
+   {
+      boolean stop;
+      net.maxIter = net.iter + iterations;
+      net.startTraining();
+
+      do // while (net.iter < net.maxIter && net.avgError > net.error && !stop);
+      {
+         stop = net.trainIteration();
+         restoreMask();
+      } while (net.iter < net.maxIter && net.avgError > net.error && !stop);
+
+      net.finishTraining();
+      restoreMask();
+   } // public void fineTune(int iterations) throws IOException
+
+/*
+* averageError runs every case and gives the average error, as training reports it
+*
+* @return the average error over the cases
+*/
+   public double averageError()
+   {
+      return net.epochError() / net.cases;
+   }
+
+/*
+* timeForward times the forward pass of every case, one case at a time as a per-frame caller would run them
+*
+* @param runs passes over the cases
+* @return the mean time per case in microseconds
+*/
+   public double timeForward(int runs)
+   {
+      long start = 0L;
+      for (int r = -runs; r < runs; r++) // the first runs passes warm up the JIT
+      {
+         if (r == 0)
+         {
+            start = System.nanoTime();
+         }
+         for (int c = 0; c < net.cases; c++)
+         {
+            net.sparseInput = net.sparseInputs[c];
+            net.runRun(net.inputs[c]);
+         }
+      } // for (int r = -runs; r < runs; r++)
+      return (System.nanoTime() - start) / 1000.0 / ((long) runs * net.cases);
+   } // public double timeForward(int runs)
+
+/*
+* Main method to prune, fine-tune and save a network
+*
+* @param args the control file, the fractions, the fine-tune iterations and the pruned weights file
+*/
+   public static void main(String[] args) throws IOException
+   {
+      Nlayer net = new Nlayer();
+      net.loadConfigParams((args.length > 0) ? args[0] : net.DEFAULTCONTROL);
+      if (!net.training || net.weightPopulation != net.LOAD)
+      {
+         throw new IllegalArgumentException("Pruning needs a training control file that loads the trained weights");
+      }
+      if (net.floatPrecision)
+      {
+         throw new IllegalArgumentException("Pruning runs on the double engine (precision double)");
+      }
+
+      StringTokenizer st = new StringTokenizer((args.length > 1) ? args[1] : "0.9", ",");
+      double[] fractions = new double[st.countTokens()];
+      for (int n = 0; n < fractions.length; n++)
+      {
+         fractions[n] = Double.parseDouble(st.nextToken());
+      }
+      int iterations = (args.length > 2) ? Integer.parseInt(args[2]) : 0;
+      String output = (args.length > 3) ? args[3] : net.weightsFile + ".pruned";
+
+      net.keepAlive = 0;
+      net.allocateMemoryTrain();
+      net.populateArrays();
+      Pruning pruning = new Pruning(net);
+
+      double dense = pruning.timeForward(TIMING_RUNS);
+      System.out.printf("Average error before pruning: %.17f%n", pruning.averageError());
+      pruning.prune(fractions);
+      System.out.printf("Average error after pruning:  %.17f%n", pruning.averageError());
+      if (iterations > 0)
+      {
+         pruning.fineTune(iterations);
+         System.out.printf("Average error after %d fine-tuning iterations: %.17f%n", iterations,
+                           pruning.averageError());
+      }
+
+      for (int n = 0; n < net.layers - 1; n++)
+      {
+         LayerWeights lw = net.weights[n];
+         System.out.printf("Layer %d: %,d of %,d weights kept%n", n, lw.nonzeros(), lw.w.length);
+      }
+
+      BinaryWeights.writeSparse(output, net.N, net.weights);
+      File denseFile = File.createTempFile("dense", ".weights");
+      denseFile.deleteOnExit();
+      BinaryWeights.write(denseFile.getPath(), net.N, net.weights);
+      System.out.printf("Saved \"%s\": %,d bytes, against %,d bytes dense%n", output, new File(output).length(),
+                        denseFile.length());
+
+      net.compressWeights();
+      double compressed = pruning.timeForward(TIMING_RUNS);
+      System.out.printf("Forward pass per case: %.1f us dense, %.1f us pruned and compressed%n", dense, compressed);
+   } // public static void main(String[] args) throws IOException
+
+} // public class Pruning
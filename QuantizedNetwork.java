@@ -0,0 +1,390 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file is the int8 inference engine of an N-layer Network, used for running when the control file asks for
+* "precision int8". The weights of every layer are quantized to signed bytes with per-channel or per-layer scales
+* (see Int8LayerWeights), and the activations feeding every layer are quantized to bytes with one scale per layer.
+* Those activation scales come from calibration: main runs the double network on the training cases of a control
+* file and the range each layer's activations cover sets its scale. The scales are saved next to the weights file,
+* in calibrationFile, and every later run with precision int8 reads them back, whatever cases it runs.
+* A layer whose activations are never negative, such as the 0 to 1 pels of the input layer or a sigmoid layer,
+* uses unsigned bytes (0 to 255), so the pels are represented exactly; any other layer uses -127 to 127.
+* The calibration file is little-endian: the MAGIC number, the format VERSION, the number of layers and the
+* activations per layer as ints, then for every layer but the output layer an int, 1 for unsigned and 0 for signed,
+* and the double scale of its activations.
+* Each layer sums byte products in integers, then scales the sums back to theta in double, applies the activation
+* function and quantizes the result for the next layer. An input case with a sparse form (see SparseVector) only
+* has its nonzero inputs quantized, and only their rows of the first layer are visited.
+* report runs the double and the int8 engines side by side and prints how far apart they are, timing both with
+* NlayerBenchmark.time.
+*
+* Usage: java QuantizedNetwork [control file] [channel | layer]
+*        the control file names the trained weights and the training cases to calibrate on and compare with;
+*        the calibration is written to calibrationFile of the weights file
+*
+* ==== Methods ====
+* QuantizedNetwork(Nlayer, boolean)
+* calibrate()
+* calibrationFile(String)
+* writeCalibration(String)
+* readCalibration(String)
+* quantize(double[], int)
+* forward(double[], SparseVector)
+* runCases()
+* bytes()
+* report()
+* main(String[])
+*/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+public class QuantizedNetwork
+{
+/*
+* MAGIC --- first int of every calibration file ("NLQ8" read as a little-endian int)
+* VERSION - version of the calibration format written by this class
+*/
+   static final int MAGIC = 0x38514C4E;
+   static final int VERSION = 1;
+
+/*
+* net ------- the network this engine runs; supplies the layout, the cases and the activation functions
+* layers ---- number of layers of the network
+* N --------- number of activations per layer
+* weights --- int8 copy of the weights
+* actScale -- the value of one step of the quantized activations of each layer (all but the output layer)
+* unsigned -- true for each layer whose activations are quantized to unsigned bytes
+* qa -------- quantized activations of the current case, per layer
+* qSparse --- quantized nonzero inputs of the current case, when it has a sparse form
+* sum ------- integer sums of the current case, per layer
+* theta ----- theta values of the current case
+* a --------- activations of the current case, in double
+*/
+   final Nlayer net;
+   final int layers;
+   final int[] N;
+   final Int8LayerWeights[] weights;
+   final double[] actScale;
+   final boolean[] unsigned;
+   final byte[][] qa;
+   final byte[] qSparse;
+   final long[][] sum;
+   final double[][] theta, a;
+
+/*
+* Constructor quantizes the network's weights; the activation scales are then set by calibrate or readCalibration
+*
+* @param net the network, with its weights already populated
+* @param perChannel true for a weight scale per destination activation, false for one per layer
+*/
+   public QuantizedNetwork(Nlayer net, boolean perChannel)
+   {
+      this.net = net;
+      layers = net.layers;
+      N = net.N;
+
+      weights = new Int8LayerWeights[layers - 1];
+      for (int n = 0; n < layers - 1; n++)
+      {
+         weights[n] = new Int8LayerWeights(net.weights[n], perChannel);
+      }
+
+      actScale = new double[layers - 1];
+      unsigned = new boolean[layers - 1];
+      qa = new byte[layers - 1][];
+      qSparse = new byte[N[0]];
+      sum = new long[layers][];
+      theta = new double[layers][];
+      a = new double[layers][];
+      for (int n = 0; n < layers; n++)
+      {
+         if (n < layers - 1)
+         {
+            qa[n] = new byte[N[n]];
+         }
+         sum[n] = new long[N[n]];
+         theta[n] = new double[N[n]];
+         a[n] = new double[N[n]];
+      }
+   } // public QuantizedNetwork(Nlayer net, boolean perChannel)
+
+/*
+* calibrate runs the double network on every case and sets the scale of each layer's activations from the
+* largest magnitude they reach, using unsigned bytes for layers that are never negative
+*/
+   public void calibrate()
+   {
+      double[] min = new double[layers - 1];
+      double[] max = new double[layers - 1];
+
+      for (int c = 0; c < net.inputs.length; c++)
+      {
+         net.sparseInput = net.sparseInputs[c];
+         net.runRun(net.inputs[c]);
+         for (int n = 0; n < layers - 1; n++)
+         {
+            for (double x : net.a[n])
+            {
+               min[n] = Math.min(min[n], x);
+               max[n] = Math.max(max[n], x);
+            }
+         }
+      } // for (int c = 0; c < net.inputs.length; c++)
+
+      for (int n = 0; n < layers - 1; n++)
+      {
+         unsigned[n] = min[n] >= 0.0;
+         double range = unsigned[n] ? max[n] / 255.0 : Math.max(-min[n], max[n]) / 127.0;
+         actScale[n] = (range > 0.0) ? range : 1.0;
+      }
+   } // public void calibrate()
+
+/*
+* calibrationFile gives the file the calibration of a weights file is saved in
+*
+* @param weightsFile the weights file
+* @return the weights file name followed by .int8
+*/
+   public static String calibrationFile(String weightsFile)
+   {
+      return weightsFile + ".int8";
+   }
+
+/*
+* writeCalibration saves the activation scales and signs of every layer
+*
+* @param fileName the calibration file
+*/
+   public void writeCalibration(String fileName) throws IOException
+   {
+      try (FileChannel ch = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                                             StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+      {
+         ByteBuffer buf = ByteBuffer.allocate(4 * (3 + layers) + 12 * (layers - 1)).order(ByteOrder.LITTLE_ENDIAN);
+         buf.putInt(MAGIC).putInt(VERSION).putInt(layers);
+         for (int n = 0; n < layers; n++)
+         {
+            buf.putInt(N[n]);
+         }
+         for (int n = 0; n < layers - 1; n++)
+         {
+            buf.putInt(unsigned[n] ? 1 : 0).putDouble(actScale[n]);
+         }
+         buf.flip();
+         while (buf.hasRemaining()) { ch.write(buf); }
+      } // try (FileChannel ch = ...)
+   } // public void writeCalibration(String fileName) throws IOException
+
+/*
+* readCalibration loads the activation scales and signs saved by writeCalibration
+*
+* @param fileName the calibration file, which must match the network's layout
+*/
+   public void readCalibration(String fileName) throws IOException
+   {
+      ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(Paths.get(fileName))).order(ByteOrder.LITTLE_ENDIAN);
+      if (buf.remaining() < 12 || buf.getInt() != MAGIC)
+      {
+         throw new IOException("\"" + fileName + "\" is not an int8 calibration file");
+      }
+      int version = buf.getInt();
+      if (version != VERSION)
+      {
+         throw new IOException("Unsupported int8 calibration version " + version);
+      }
+
+      boolean matches = buf.getInt() == layers && buf.remaining() == 4 * layers + 12 * (layers - 1);
+      for (int n = 0; matches && n < layers; n++)
+      {
+         matches = buf.getInt() == N[n];
+      }
+      if (!matches)
+      {
+         throw new ArrayIndexOutOfBoundsException("Int8 calibration does not match configuration parameters");
+      }
+
+      for (int n = 0; n < layers - 1; n++)
+      {
+         unsigned[n] = buf.getInt() != 0;
+         actScale[n] = buf.getDouble();
+      }
+   } // public void readCalibration(String fileName) throws IOException
+
+/*
+* quantize rounds the activations of a layer to bytes, clamping anything outside the calibrated range
+*
+* @param x the activations
+* @param n the layer
+*/
+   public void quantize(double[] x, int n)
+   {
+      byte[] q = qa[n];
+      double inv = 1.0 / actScale[n];
+      int lo = unsigned[n] ? 0 : -127;
+      int hi = unsigned[n] ? 255 : 127;
+
+      for (int k = 0; k < q.length; k++)
+      {
+         long v = Math.round(x[k] * inv);
+         q[k] = (byte) Math.max(lo, Math.min(hi, v)); // unsigned values above 127 wrap, and are read back with & 0xFF
+      }
+   } // public void quantize(double[] x, int n)
+
+/*
+* forward runs one case through the int8 network, leaving the output activations in a[layers - 1]
+*
+* @param in the activations for the first layer
+* @param sparse the sparse form of in, or null
+*/
+   public void forward(double[] in, SparseVector sparse)
+   {
+      boolean isSparse = sparse != null && sparse.dense == in;
+      if (isSparse)
+      {
+         double inv = 1.0 / actScale[0];
+         int lo = unsigned[0] ? 0 : -127;
+         int hi = unsigned[0] ? 255 : 127;
+         for (int i = 0; i < sparse.count; i++)
+         {
+            qSparse[i] = (byte) Math.max(lo, Math.min(hi, Math.round(sparse.value[i] * inv)));
+         }
+      }
+      else
+      {
+         quantize(in, 0);
+      }
+
+      for (int n = 1; n < layers; n++)
+      {
+         Int8LayerWeights lw = weights[n - 1];
+         if (n == 1 && isSparse)
+         {
+            lw.forwardSparse(sparse.index, qSparse, sparse.count, unsigned[0], sum[1]);
+         }
+         else
+         {
+            lw.forward(qa[n - 1], unsigned[n - 1], sum[n]);
+         }
+         for (int j = 0; j < N[n]; j++)
+         {
+            theta[n][j] = sum[n][j] * (actScale[n - 1] * lw.scale[j]);
+         }
+
+         net.act[n].forward(theta[n], a[n]);
+         if (n < layers - 1)
+         {
+            quantize(a[n], n);
+         }
+      } // for (int n = 1; n < layers; n++)
+   } // public void forward(double[] in, SparseVector sparse)
+
+/*
+* runCases runs every case and writes the outputs into net.cOutputs
+*/
+   public void runCases()
+   {
+      int out = layers - 1;
+      for (int c = 0; c < net.inputs.length; c++)
+      {
+         forward(net.inputs[c], net.sparseInputs[c]);
+         System.arraycopy(a[out], 0, net.cOutputs[c], 0, N[out]);
+      }
+   } // public void runCases()
+
+/*
+* bytes gives the memory the quantized weights take
+*
+* @return the bytes of every layer's weights and scales
+*/
+   public long bytes()
+   {
+      long total = 0L;
+      for (Int8LayerWeights lw : weights)
+      {
+         total += lw.bytes();
+      }
+      return total;
+   }
+
+/*
+* report runs every case through the double network and the int8 network and prints the largest and mean
+* difference between their outputs, how often the largest output is the same, the average error of each
+* against the expected outputs, the memory of the weights and the time per case of each engine's runCases
+*/
+   public void report() throws IOException
+   {
+      int out = layers - 1;
+      int cases = net.inputs.length;
+      double maxDiff = 0.0, sumDiff = 0.0, doubleError = 0.0, int8Error = 0.0;
+      int agree = 0;
+
+      for (int c = 0; c < cases; c++)
+      {
+         net.sparseInput = net.sparseInputs[c];
+         net.runRun(net.inputs[c]);
+         forward(net.inputs[c], net.sparseInputs[c]);
+
+         double[] d = net.a[out];
+         int dArg = 0, qArg = 0;
+         for (int i = 0; i < N[out]; i++)
+         {
+            double diff = Math.abs(d[i] - a[out][i]);
+            maxDiff = Math.max(maxDiff, diff);
+            sumDiff += diff;
+            doubleError += (net.eOutputs[c][i] - d[i]) * (net.eOutputs[c][i] - d[i]) / 2;
+            int8Error += (net.eOutputs[c][i] - a[out][i]) * (net.eOutputs[c][i] - a[out][i]) / 2;
+            if (d[i] > d[dArg]) dArg = i;
+            if (a[out][i] > a[out][qArg]) qArg = i;
+         }
+         if (dArg == qArg) agree++;
+      } // for (int c = 0; c < cases; c++)
+
+      long doubleBytes = 0L;
+      for (LayerWeights lw : net.weights)
+      {
+         doubleBytes += 8L * lw.w.length;
+      }
+
+      double[] doubleTime = NlayerBenchmark.time(net::runCases); // the double engine, in runBatch blocks
+      double[] int8Time = NlayerBenchmark.time(this::runCases);
+
+      System.out.printf("Largest output difference: %.6f, mean %.6f%n", maxDiff, sumDiff / (cases * N[out]));
+      System.out.printf("Same largest output: %d of %d cases%n", agree, cases);
+      System.out.printf("Average error: %.17f double, %.17f int8%n", doubleError / cases, int8Error / cases);
+      System.out.printf("Weights: %,d bytes double, %,d bytes int8%n", doubleBytes, bytes());
+      System.out.printf("Time per case: %.1f +/- %.1f us double, %.1f +/- %.1f us int8%n", doubleTime[0] / cases,
+                        doubleTime[1] / cases, int8Time[0] / cases, int8Time[1] / cases);
+   } // public void report() throws IOException
+
+/*
+* Main method to quantize a network, calibrate it on the training cases of a control file, save the calibration
+* next to the weights and report its accuracy
+*
+* @param args the control file, then channel (default) or layer for the weight scales
+*/
+   public static void main(String[] args) throws IOException
+   {
+      Nlayer net = new Nlayer();
+      net.loadConfigParams((args.length > 0) ? args[0] : net.DEFAULTCONTROL);
+      boolean perChannel = args.length < 2 || !args[1].equals("layer");
+
+      net.training = false;      // only the cases and the weights are needed
+      net.int8Precision = false; // the double network is what gets calibrated
+      net.allocateMemoryRun();
+      net.populateArrays();
+
+      QuantizedNetwork quant = new QuantizedNetwork(net, perChannel);
+      quant.calibrate();
+      String calibration = calibrationFile(net.weightsFile);
+      quant.writeCalibration(calibration);
+
+      System.out.printf("Int8 weights with per-%s scales, calibrated on %d cases, saved to \"%s\"%n",
+                        perChannel ? "channel" : "layer", net.inputs.length, calibration);
+      quant.report();
+   } // public static void main(String[] args) throws IOException
+
+} // public class QuantizedNetwork
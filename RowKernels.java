@@ -0,0 +1,87 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file is the interface for alternative implementations of the LayerWeights row kernels.
+* Each kernel works on rows [lo, hi) of a row-major weight array with cols weights per row, exactly like the
+* matching LayerWeights method, so an implementation can be swapped in without changing any caller.
+* simd() loads the Vector API implementation (SimdKernels) by name, so this interface and LayerWeights never link
+* against jdk.incubator.vector and the network still runs on the scalar loops when that module is missing.
+*
+* ==== Methods ====
+* forwardRows(double[], int, double[], double[], int, int, int)
+* forwardBlock(double[], int, double[][], double[][], int, int, int, int)
+* backwardUpdateRows(double[], int, double[], double[], double, double[], int, int)
+* backwardRows(double[], int, double[], double[], int, int)
+* addOuterRows(double[], int, double, double[], double[], int, int)
+* forwardSparse(double[], int, int[], double[], int, double[])
+* addOuterSparse(double[], int, double, int[], double[], int, double[])
+* lanes()
+* simd()
+*/
+
+public interface RowKernels
+{
+/*
+* forwardRows adds in[k] * w[k][j] for rows [lo, hi) to out[off + j]
+*/
+   void forwardRows(double[] w, int cols, double[] in, double[] out, int off, int lo, int hi);
+
+/*
+* forwardBlock runs forwardRows for the 4 cases in[c] to in[c + 3] into out[c] to out[c + 3] with the same sums,
+* loading each weight once for all 4
+*/
+   void forwardBlock(double[] w, int cols, double[][] in, double[][] out, int c, int off, int lo, int hi);
+
+/*
+* backwardUpdateRows sets omega[k] = sum over j of psi[j] * w[k][j], then applies w[k][j] += scale * a[k] * psi[j]
+*/
+   void backwardUpdateRows(double[] w, int cols, double[] psi, double[] omega, double scale, double[] a, int lo, int hi);
+
+/*
+* backwardRows sets omega[k] = sum over j of psi[j] * w[k][j]
+*/
+   void backwardRows(double[] w, int cols, double[] psi, double[] omega, int lo, int hi);
+
+/*
+* addOuterRows applies w[k][j] += scale * a[k] * psi[j]
+*/
+   void addOuterRows(double[] w, int cols, double scale, double[] a, double[] psi, int lo, int hi);
+
+/*
+* forwardSparse adds value[i] * w[index[i]][j] for the first count index/value pairs to out[j]
+*/
+   void forwardSparse(double[] w, int cols, int[] index, double[] value, int count, double[] out);
+
+/*
+* addOuterSparse applies w[index[i]][j] += scale * value[i] * psi[j] for the first count index/value pairs
+*/
+   void addOuterSparse(double[] w, int cols, double scale, int[] index, double[] value, int count, double[] psi);
+
+/*
+* lanes gives the doubles the kernels process at once; a layer with fewer columns than that runs the scalar loops
+* instead (see LayerWeights.useKernels)
+*
+* @return the doubles per vector
+*/
+   int lanes();
+
+/*
+* simd loads the Vector API kernels
+*
+* @return the SimdKernels instance, or null if jdk.incubator.vector is not available (run with
+*         --add-modules jdk.incubator.vector) or vector/SimdKernels.java was not compiled
+*/
+   static RowKernels simd()
+   {
+      try
+      {
+         return (RowKernels) Class.forName("SimdKernels").getDeclaredConstructor().newInstance();
+      }
+      catch (ReflectiveOperationException | LinkageError e)
+      {
+         return null;
+      }
+   } // static RowKernels simd()
+
+} // public interface RowKernels
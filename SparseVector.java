@@ -0,0 +1,96 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file holds the nonzero entries of one input case of an N-layer Network as index/value pairs.
+* The hand images are masked down to one color, cropped and centered, so most of their pels are zero, and a zero
+* input adds nothing to the first layer's sums or to its weight updates. The LayerWeights kernels that take a
+* SparseVector (forwardSparse and addOuterSparse) visit only the nonzero rows, in increasing order, so their results
+* are exactly those of the dense kernels while their work shrinks with the density of the case.
+* A SparseVector remembers the dense row it was built from, and the kernels only use it in place of that row.
+*
+* ==== Methods ====
+* SparseVector(double[], int)
+* of(double[], double)
+* count(double[])
+* density()
+*/
+
+public class SparseVector
+{
+/*
+* dense --- the dense row this is the sparse form of
+* index --- the positions of the nonzero entries, increasing
+* value --- the nonzero entries, value[i] = dense[index[i]]
+* count --- the number of nonzero entries
+*/
+   final double[] dense;
+   final int[] index;
+   final double[] value;
+   final int count;
+
+/*
+* Constructor gathers the nonzero entries of a dense row
+*
+* @param dense the dense row, which must not change afterwards
+* @param count the number of nonzero entries in dense (see count)
+*/
+   public SparseVector(double[] dense, int count)
+   {
+      this.dense = dense;
+      this.count = count;
+      index = new int[count];
+      value = new double[count];
+
+      int i = 0;
+      for (int k = 0; k < dense.length; k++)
+      {
+         if (dense[k] != 0.0)
+         {
+            index[i] = k;
+            value[i] = dense[k];
+            i++;
+         }
+      }
+   } // public SparseVector(double[] dense, int count)
+
+/*
+* of builds the sparse form of a row if it is sparse enough to be worth it
+*
+* @param dense the dense row
+* @param maxDensity the largest fraction of nonzero entries for which the sparse form is built
+* @return the sparse form, or null if the row is denser than maxDensity
+*/
+   public static SparseVector of(double[] dense, double maxDensity)
+   {
+      int count = count(dense);
+      return (count <= maxDensity * dense.length) ? new SparseVector(dense, count) : null;
+   }
+
+/*
+* count counts the nonzero entries of a dense row
+*
+* @param dense the dense row
+* @return the number of entries that are not zero
+*/
+   public static int count(double[] dense)
+   {
+      int count = 0;
+      for (double d : dense)
+      {
+         if (d != 0.0) count++;
+      }
+      return count;
+   }
+
+/*
+* density gives the fraction of the row that is nonzero
+*
+* @return count / the length of the dense row
+*/
+   public double density()
+   {
+      return (double) count / dense.length;
+   }
+
+} // public class SparseVector
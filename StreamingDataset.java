@@ -0,0 +1,407 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file streams the training cases of a packed dataset (see PackedDataset) from disk in chunks, so an N-layer
+* Network can train on more cases than fit in the heap. A background reader thread reads and decodes chunks of
+* consecutive cases into a small pool of reusable buffers and hands them over through a bounded queue, so at most
+* prefetch + 1 chunks are ever in memory and the reader stays ahead of training.
+* Shuffling is done per epoch by visiting the chunks in a random order and the cases of every chunk in a random
+* order, which mixes the whole set over a few epochs without holding it in memory.
+* Epochs can be requested before the previous one is consumed, so the reader carries on into the next epoch while
+* training finishes the current one; an epoch that turns out not to be needed is cancelled with cancelPending.
+*
+* ==== Methods ====
+* StreamingDataset(String, int, int, long)
+* readLabels(double[][])
+* startEpoch(boolean)
+* next()
+* take()
+* release(Chunk)
+* pending()
+* cancelPending()
+* close()
+* readChunk(Chunk, int, boolean)
+* run()
+*/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class StreamingDataset implements Runnable
+{
+/*
+* cases ------- number of cases in the file
+* width ------- inputs per case
+* outputs ----- expected outputs per case
+* type -------- PackedDataset.UINT8 or PackedDataset.FLOAT32
+* chunkCases -- cases per chunk
+* chunks ------ number of chunks, the last one possibly short
+* sampleBytes - bytes per case in the file
+* labelsStart - file position of the expected outputs
+*
+* channel ----- the open dataset file
+* raw --------- the reader thread's buffer for one chunk of file bytes
+* labels ------ the reader thread's buffer for one chunk of expected outputs
+* rand -------- shuffles the chunk order, on the training thread
+* caseRand ---- shuffles the case order within chunks, on the reader thread
+*
+* free -------- chunks ready to be filled by the reader
+* full -------- filled chunks waiting for training, bounded by prefetch
+* epochs ------ the chunk order of every epoch requested, read by the reader
+* reader ------ the background reader thread
+*
+* requested --- epochs requested by startEpoch
+* finished ---- epochs whose END has been taken
+* cancelBelow - epochs numbered (from 0) below this are cut short by the reader
+* waitNanos --- total time spent in next() waiting for the reader
+*/
+   final int cases, width, outputs, type, chunkCases, chunks;
+   final long sampleBytes, labelsStart;
+
+   final FileChannel channel;
+   final ByteBuffer raw, labels;
+   final Random rand = new Random();
+   final Random caseRand = new Random();
+
+   final BlockingQueue<Chunk> free, full;
+   final BlockingQueue<int[]> epochs = new LinkedBlockingQueue<int[]>();
+   final Thread reader;
+
+   int requested, finished;
+   volatile int cancelBelow;
+   long waitNanos;
+
+/*
+* END - handed over after the last chunk of an epoch
+*/
+   static final Chunk END = new Chunk(0, 0, 0);
+
+/*
+* Chunk is one block of consecutive cases, decoded and ready to train on
+*
+* count --- number of cases in use (the last chunk of the file may be short)
+* index --- the case number of every row, in the (possibly shuffled) order of the rows
+* inputs -- the inputs of every case, scaled to [0, 1]
+* eOutputs  the expected outputs of every case
+* error --- set instead of the data if the reader failed
+*/
+   static class Chunk
+   {
+      int count;
+      final int[] index;
+      final double[][] inputs, eOutputs;
+      IOException error;
+
+      Chunk(int chunkCases, int width, int outputs)
+      {
+         index = new int[chunkCases];
+         inputs = new double[chunkCases][width];
+         eOutputs = new double[chunkCases][outputs];
+      }
+   } // static class Chunk
+
+/*
+* Constructor opens a packed dataset, allocates the chunk pool and starts the reader
+*
+* @param fileName the packed dataset
+* @param chunkCases cases per chunk
+* @param prefetch how many filled chunks the reader may keep ready ahead of training
+* @param shuffleSeed seed for the shuffling, so runs can be repeated
+*/
+   public StreamingDataset(String fileName, int chunkCases, int prefetch, long shuffleSeed) throws IOException
+   {
+      channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+
+      ByteBuffer head = ByteBuffer.allocate(PackedDataset.HEADER).order(ByteOrder.LITTLE_ENDIAN);
+      while (head.hasRemaining() && channel.read(head, head.position()) >= 0) { }
+      head.flip();
+      if (head.remaining() < PackedDataset.HEADER || head.getInt() != PackedDataset.MAGIC)
+      {
+         channel.close();
+         throw new IOException("\"" + fileName + "\" is not a packed dataset, which streaming needs");
+      }
+      int version = head.getInt();
+      if (version != PackedDataset.VERSION)
+      {
+         channel.close();
+         throw new IOException("Unsupported packed dataset version " + version);
+      }
+      cases = head.getInt();
+      width = head.getInt();
+      outputs = head.getInt();
+      type = head.getInt();
+
+      this.chunkCases = Math.min(chunkCases, cases);
+      chunks = (cases + this.chunkCases - 1) / this.chunkCases;
+      sampleBytes = (type == PackedDataset.UINT8) ? width : 4L * width;
+      labelsStart = PackedDataset.HEADER + sampleBytes * cases;
+
+      raw = ByteBuffer.allocate((int) (sampleBytes * this.chunkCases)).order(ByteOrder.LITTLE_ENDIAN);
+      labels = ByteBuffer.allocate(8 * outputs * this.chunkCases).order(ByteOrder.LITTLE_ENDIAN);
+      rand.setSeed(shuffleSeed);
+      caseRand.setSeed(shuffleSeed + 1);
+
+      free = new ArrayBlockingQueue<Chunk>(prefetch + 1);
+      full = new ArrayBlockingQueue<Chunk>(prefetch + 1);
+      for (int ind = 0; ind < prefetch + 1; ind++)
+      {
+         free.add(new Chunk(this.chunkCases, width, outputs));
+      }
+
+      reader = new Thread(this, "dataset-reader");
+      reader.setDaemon(true);
+      reader.start();
+   } // public StreamingDataset(String fileName, int chunkCases, int prefetch, long shuffleSeed)
+
+/*
+* readLabels copies the expected outputs of every case, which are small enough to keep, such as for printing results
+*
+* @param eOutputs one row per case, filled
+*/
+   public void readLabels(double[][] eOutputs) throws IOException
+   {
+      ByteBuffer all = ByteBuffer.allocate(8 * outputs * cases).order(ByteOrder.LITTLE_ENDIAN);
+      while (all.hasRemaining() && channel.read(all, labelsStart + all.position()) >= 0) { }
+      all.flip();
+
+      DoubleBuffer doubles = all.asDoubleBuffer();
+      for (int c = 0; c < cases; c++)
+      {
+         doubles.get(eOutputs[c]);
+      }
+   } // public void readLabels(double[][] eOutputs) throws IOException
+
+/*
+* startEpoch asks the reader for one more pass over every case, read after any epochs already requested
+*
+* @param shuffle true to visit chunks, and the cases in them, in random order
+*/
+   public void startEpoch(boolean shuffle)
+   {
+      int[] order = new int[chunks + 1];
+      for (int ind = 0; ind < chunks; ind++)
+      {
+         order[ind] = ind;
+      }
+
+      if (shuffle)
+      {
+         for (int ind = chunks - 1; ind > 0; ind--)
+         {
+            int swap = rand.nextInt(ind + 1);
+            int temp = order[ind];
+            order[ind] = order[swap];
+            order[swap] = temp;
+         }
+      }
+      order[chunks] = shuffle ? 1 : 0; // the last entry tells the reader whether to shuffle within chunks
+
+      requested++;
+      epochs.add(order);
+   } // public void startEpoch(boolean shuffle)
+
+/*
+* next waits for the next chunk of the oldest epoch not yet finished
+*
+* @return the chunk, to be handed back with release, or null once the epoch is done
+*/
+   public Chunk next()
+   {
+      long start = System.nanoTime();
+      Chunk chunk = take();
+      waitNanos += System.nanoTime() - start;
+
+      if (chunk == END)
+      {
+         finished++;
+         return null;
+      }
+      if (chunk.error != null)
+      {
+         throw new UncheckedIOException(chunk.error);
+      }
+      return chunk;
+   } // public Chunk next()
+
+/*
+* take waits for the next chunk handed over by the reader
+*
+* @return the chunk, or END
+*/
+   Chunk take()
+   {
+      try
+      {
+         return full.take();
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("Interrupted while waiting for training data", e);
+      }
+   } // Chunk take()
+
+/*
+* release hands a chunk back to the reader to be refilled
+*
+* @param chunk a chunk returned by next
+*/
+   public void release(Chunk chunk)
+   {
+      free.add(chunk);
+   }
+
+/*
+* pending gives the number of epochs requested but not yet finished
+*
+* @return requested - finished
+*/
+   public int pending()
+   {
+      return requested - finished;
+   }
+
+/*
+* cancelPending drops every epoch requested but not yet finished, such as one read ahead when training stops;
+* the reader stops reading them and the chunks already read are handed back
+*/
+   public void cancelPending()
+   {
+      cancelBelow = requested;
+      while (finished < requested)
+      {
+         Chunk chunk = take();
+         if (chunk == END)
+         {
+            finished++;
+         }
+         else
+         {
+            free.add(chunk);
+         }
+      } // while (finished < requested)
+   } // public void cancelPending()
+
+/*
+* close stops the reader and closes the file
+*/
+   public void close() throws IOException
+   {
+      reader.interrupt();
+      channel.close();
+   }
+
+/*
+* readChunk reads and decodes one chunk of consecutive cases on the reader thread
+*
+* @param chunk the buffer to fill
+* @param number which chunk of the file to read
+* @param shuffle true to put the cases of the chunk in random order
+*/
+   void readChunk(Chunk chunk, int number, boolean shuffle) throws IOException
+   {
+      int first = number * chunkCases;
+      int count = Math.min(chunkCases, cases - first);
+      chunk.count = count;
+      chunk.error = null;
+
+      raw.clear().limit((int) (sampleBytes * count));
+      long start = PackedDataset.HEADER + sampleBytes * first;
+      while (raw.hasRemaining())
+      {
+         if (channel.read(raw, start + raw.position()) < 0) throw new EOFException("Packed dataset is truncated");
+      }
+
+      labels.clear().limit(8 * outputs * count);
+      start = labelsStart + 8L * outputs * first;
+      while (labels.hasRemaining())
+      {
+         if (channel.read(labels, start + labels.position()) < 0) throw new EOFException("Packed dataset is truncated");
+      }
+
+      for (int row = 0; row < count; row++)
+      {
+         chunk.index[row] = row;
+      }
+      if (shuffle)
+      {
+         for (int row = count - 1; row > 0; row--)
+         {
+            int swap = caseRand.nextInt(row + 1);
+            int temp = chunk.index[row];
+            chunk.index[row] = chunk.index[swap];
+            chunk.index[swap] = temp;
+         }
+      }
+
+      for (int row = 0; row < count; row++)
+      {
+         int src = chunk.index[row];           // the case's position within the chunk in the file
+         double[] in = chunk.inputs[row];
+         if (type == PackedDataset.UINT8)
+         {
+            int base = (int) (src * sampleBytes);
+            for (int k = 0; k < width; k++)
+            {
+               in[k] = (raw.get(base + k) & 0xFF) / 255.0; // 255 is the max value for RGB
+            }
+         }
+         else
+         {
+            int base = (int) (src * sampleBytes);
+            for (int k = 0; k < width; k++)
+            {
+               in[k] = raw.getFloat(base + 4 * k);
+            }
+         }
+
+         for (int i = 0; i < outputs; i++)
+         {
+            chunk.eOutputs[row][i] = labels.getDouble(8 * (src * outputs + i));
+         }
+         chunk.index[row] = first + src;       // from here on, the case number in the whole dataset
+      } // for (int row = 0; row < count; row++)
+   } // void readChunk(Chunk chunk, int number, boolean shuffle) throws IOException
+
+/*
+* run is the reader thread: for every epoch requested, it fills free chunks in the epoch's order and queues them,
+* stopping early if the epoch has been cancelled
+*/
+   public void run()
+   {
+      try
+      {
+         for (int number = 0; ; number++)
+         {
+            int[] order = epochs.take();
+            boolean shuffle = order[chunks] == 1;
+
+            for (int ind = 0; ind < chunks && number >= cancelBelow; ind++)
+            {
+               Chunk chunk = free.take();
+               try
+               {
+                  readChunk(chunk, order[ind], shuffle);
+               }
+               catch (IOException e)
+               {
+                  chunk.error = e;
+               }
+               full.put(chunk);
+            } // for (int ind = 0; ind < chunks; ind++)
+
+            full.put(END);
+         } // for (int number = 0; ; number++)
+      } // try
+      catch (InterruptedException e)
+      {
+         // closed
+      }
+   } // public void run()
+
+} // public class StreamingDataset
@@ -0,0 +1,108 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file holds the per-worker scratch state for training an N-layer Network on several threads.
+* Each context owns its own activations, theta, psi and gradient accumulators and only reads the shared weights,
+* so contexts never write to the network or to each other. Layer loops use local counters instead of Nlayer.n.
+* ParallelTrainer resets the accumulators between batches: reduceSlice zeroes each slice of the gradients as it
+* sums it, and trainEpoch zeroes the errors as it collects them.
+*
+* ==== Methods ====
+* TrainContext(Nlayer)
+* accumulate(double[], SparseVector, double[])
+*/
+
+public class TrainContext
+{
+/*
+* net ------- the network being trained; only its weights, layout and activation functions are read
+* layers ---- number of layers of the network
+* N --------- number of activations per layer
+* a --------- activations of this worker's current case
+* theta ----- theta values of this worker's current case
+* psi ------- psi values of this worker's current case
+* gradients - accumulated weight steps (a * psi) over the cases this worker has seen in the current batch
+* totalError  summed case error over the cases this worker has seen in the current batch
+* maxCaseError the largest case error this worker has seen in the current batch
+*/
+   final Nlayer net;
+   final int layers;
+   final int[] N;
+   final double[][] a, theta, psi;
+   final LayerWeights[] gradients;
+   double totalError, maxCaseError;
+
+/*
+* Constructor allocates the scratch buffers for the network's layout
+*
+* @param net the network to train
+*/
+   public TrainContext(Nlayer net)
+   {
+      this.net = net;
+      layers = net.layers;
+      N = net.N;
+
+      a = new double[layers][];
+      theta = new double[layers][];
+      psi = new double[layers][];
+      for (int n = 1; n < layers; n++) // the input layer points at the case's inputs
+      {
+         a[n] = new double[N[n]];
+         theta[n] = new double[N[n]];
+         psi[n] = new double[N[n]];
+      }
+
+      gradients = new LayerWeights[layers - 1];
+      for (int n = 0; n < layers - 1; n++)
+      {
+         gradients[n] = new LayerWeights(N[n], N[n + 1]);
+         gradients[n].useKernels(net.weights[n].simd);
+      }
+   } // public TrainContext(Nlayer net)
+
+/*
+* accumulate runs one case forward, adds its error to totalError and adds a * psi into the gradients
+*
+* @param inputs the activations for the first layer
+* @param sparse the sparse form of the inputs, or null to run them dense
+* @param expected the expected outputs for the case
+* @return the error of the case before any update
+*/
+   public double accumulate(double[] inputs, SparseVector sparse, double[] expected)
+   {
+      LayerWeights[] weights = net.weights;
+      int out = layers - 1;
+      a[0] = inputs;
+
+      for (int n = 1; n < layers; n++)
+      {
+         weights[n - 1].forward(a[n - 1], sparse, theta[n]);
+         net.act[n].forward(theta[n], a[n]);
+      }
+
+      double caseError = 0.0;
+      for (int i = 0; i < N[out]; i++)
+      {
+         double omega = expected[i] - a[out][i];  // ωi = (Ti − Fi)
+         caseError   += (omega * omega) / 2;
+         psi[out][i]  = omega;
+      }
+      net.act[out].backward(a[out], psi[out]);
+
+      for (int n = layers - 2; n > 0; n--)
+      {
+         gradients[n].addOuter(1.0, a[n], psi[n + 1]);
+         weights[n].backward(psi[n + 1], psi[n]); // psi[n] holds the omegas here
+         net.act[n].backward(a[n], psi[n]);
+      } // for (int n = layers - 2; n > 0; n--)
+
+      gradients[0].addOuter(1.0, a[0], sparse, psi[1]);
+
+      totalError += caseError;
+      maxCaseError = Math.max(maxCaseError, caseError);
+      return caseError;
+   } // public double accumulate(double[] inputs, SparseVector sparse, double[] expected)
+
+} // public class TrainContext
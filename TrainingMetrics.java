@@ -0,0 +1,308 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file records where the time of every training iteration of an N-layer Network goes: the forward passes, the
+* backpropagation passes and the weight updates, along with cases per second, avgError, the largest case error and
+* lambda. Every iteration is emitted as a custom JFR event (nlayer.Epoch), so a run started with
+* -XX:StartFlightRecording, or a recording started later with jcmd, shows it next to the JVM's own events, and is
+* optionally written to a metrics file as CSV, or as JSON lines when the file name ends in .jsonl or .json.
+* A new run starts the file afresh; a run resumed from a checkpoint appends to it, so the file keeps every iteration.
+* JSON has no NaN or Infinity, so a non-finite error or lambda, as left by a diverged run, is written as null.
+* The phases are only timed while a recording is enabled for the event or a metrics file is open, so an
+* uninstrumented run does not pay for the System.nanoTime calls.
+*
+* Online training fuses backpropagation and the weight update into one pass, which is timed as backprop; on the
+* ParallelTrainer the workers' forward and backprop passes run together and are timed as backprop; the FloatNetwork
+* only records the iteration time and errors.
+*
+* ==== Methods ====
+* TrainingMetrics(String, boolean)
+* startEpoch()
+* mark()
+* forward(long)
+* backprop(long)
+* update(long)
+* allocatedBytes()
+* caseError(double)
+* endEpoch(int, double, int, double)
+* jsonNumber(double)
+* close()
+*/
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+import jdk.jfr.*;
+
+public class TrainingMetrics
+{
+/*
+* EpochEvent is the JFR event committed for every iteration; times are in nanoseconds
+*/
+   @Name("nlayer.Epoch")
+   @Label("Training Iteration")
+   @Category("Neural Network")
+   @Description("One training iteration (epoch) of an N-layer Network")
+   @StackTrace(false)
+   public static class EpochEvent extends Event
+   {
+      @Label("Iteration") int iteration;
+      @Label("Forward Time") @Timespan(Timespan.NANOSECONDS) long forwardTime;
+      @Label("Backprop Time") @Timespan(Timespan.NANOSECONDS) long backpropTime;
+      @Label("Update Time") @Timespan(Timespan.NANOSECONDS) long updateTime;
+      @Label("Cases per Second") double casesPerSecond;
+      @Label("Average Error") double avgError;
+      @Label("Max Case Error") double maxCaseError;
+      @Label("Lambda") double lambda;
+      @Label("Allocated") @DataAmount long allocated;
+   } // public static class EpochEvent extends Event
+
+/*
+* CSV_HEADER - the first line of a CSV metrics file
+* THREADS ---- reads how many bytes the training thread has allocated, or null if the JVM cannot tell
+*
+* file ------- the metrics file, or null
+* json ------- true to write JSON lines instead of CSV
+* append ----- true to add to an existing metrics file instead of starting it afresh
+* out -------- the open metrics file, or null
+* event ------ the event of the current iteration
+* timing ----- true while the phases of the current iteration are being timed
+* start ------ when the current iteration started
+* forward, backprop, update - nanoseconds spent in each phase of the current iteration
+* maxCaseError the largest case error of the current iteration
+* allocStart - bytes the training thread had allocated when the current iteration started
+* allocated -- bytes the training thread allocated during the last iteration, -1 if unknown
+* probe ------ never committed; tells whether a recording has the event enabled
+*/
+   static final String CSV_HEADER = "iteration,forwardNanos,backpropNanos,updateNanos,epochNanos,casesPerSecond,"
+                                  + "avgError,maxCaseError,lambda,allocatedBytes";
+   static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+   final String file;
+   final boolean json;
+   boolean append;
+   BufferedWriter out;
+   EpochEvent event;
+   boolean timing;
+   long start, forward, backprop, update;
+   double maxCaseError;
+   long allocStart, allocated = -1L;
+   final EpochEvent probe = new EpochEvent();
+
+/*
+* Constructor opens the metrics file, if any, lazily on the first iteration
+*
+* @param file the metrics file, or null for JFR events only
+* @param append true to add to the metrics file, as when resuming from a checkpoint
+*/
+   public TrainingMetrics(String file, boolean append)
+   {
+      this.file = file;
+      this.append = append;
+      json = file != null && (file.endsWith(".jsonl") || file.endsWith(".json"));
+   }
+
+/*
+* startEpoch resets the counters at the start of an iteration
+*/
+   public void startEpoch() throws IOException
+   {
+      if (file != null && out == null)
+      {
+         boolean header = !append || new File(file).length() == 0; // length is 0 for a missing file
+         out = new BufferedWriter(new FileWriter(file, append));
+         append = true;                         // training again after close carries on the same file
+         if (!json && header)
+         {
+            out.write(CSV_HEADER);
+            out.newLine();
+         }
+      }
+
+      boolean record = probe.isEnabled();
+      event = record ? new EpochEvent() : null; // nothing is allocated unless the event is being recorded
+      timing = out != null || record;
+      forward = 0L;
+      backprop = 0L;
+      update = 0L;
+      maxCaseError = 0.0;
+      if (record)
+      {
+         event.begin();
+      }
+      allocStart = allocatedBytes();
+      start = System.nanoTime();
+   } // public void startEpoch() throws IOException
+
+/*
+* mark gives the time a phase starts, if phases are being timed
+*
+* @return System.nanoTime(), or 0 when not timing
+*/
+   public long mark()
+   {
+      return timing ? System.nanoTime() : 0L;
+   }
+
+/*
+* forward adds the time since a mark to the forward time
+*
+* @param since the mark
+* @return a new mark, for the phase that follows
+*/
+   public long forward(long since)
+   {
+      if (!timing) return 0L;
+      long now = System.nanoTime();
+      forward += now - since;
+      return now;
+   }
+
+/*
+* backprop adds the time since a mark to the backprop time
+*
+* @param since the mark
+* @return a new mark, for the phase that follows
+*/
+   public long backprop(long since)
+   {
+      if (!timing) return 0L;
+      long now = System.nanoTime();
+      backprop += now - since;
+      return now;
+   }
+
+/*
+* update adds the time since a mark to the update time
+*
+* @param since the mark
+* @return a new mark, for the phase that follows
+*/
+   public long update(long since)
+   {
+      if (!timing) return 0L;
+      long now = System.nanoTime();
+      update += now - since;
+      return now;
+   }
+
+/*
+* allocatedBytes reads how many bytes the calling thread has allocated so far, which allocates nothing itself
+*
+* @return the bytes allocated, or 0 if the JVM cannot tell
+*/
+   static long allocatedBytes()
+   {
+      return (THREADS == null) ? 0L : THREADS.getCurrentThreadAllocatedBytes();
+   }
+
+/*
+* threadBean finds the HotSpot ThreadMXBean, which can report allocated bytes
+*
+* @return the bean with allocation counting enabled, or null if the JVM does not support it
+*/
+   static com.sun.management.ThreadMXBean threadBean()
+   {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (!(bean instanceof com.sun.management.ThreadMXBean))
+      {
+         return null;
+      }
+      com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+      if (!hotspot.isThreadAllocatedMemorySupported())
+      {
+         return null;
+      }
+      hotspot.setThreadAllocatedMemoryEnabled(true);
+      return hotspot;
+   } // static com.sun.management.ThreadMXBean threadBean()
+
+/*
+* caseError records the error of one case
+*
+* @param error the case error
+*/
+   public void caseError(double error)
+   {
+      if (error > maxCaseError)
+      {
+         maxCaseError = error;
+      }
+   }
+
+/*
+* endEpoch emits the metrics of the iteration just finished
+*
+* @param iter the number of iterations done
+* @param avgError the average error of the iteration
+* @param cases the number of cases trained on
+* @param lambda the learning rate the iteration used
+*/
+   public void endEpoch(int iter, double avgError, int cases, double lambda) throws IOException
+   {
+      long elapsed = System.nanoTime() - start;
+      allocated = (THREADS == null) ? -1L : allocatedBytes() - allocStart;
+      double rate = cases * 1e9 / Math.max(1L, elapsed);
+
+      if (event != null)
+      {
+         event.end();
+      }
+      if (event != null && event.shouldCommit())
+      {
+         event.iteration = iter;
+         event.forwardTime = forward;
+         event.backpropTime = backprop;
+         event.updateTime = update;
+         event.casesPerSecond = rate;
+         event.avgError = avgError;
+         event.maxCaseError = maxCaseError;
+         event.lambda = lambda;
+         event.allocated = allocated;
+         event.commit();
+      }
+
+      if (out != null)
+      {
+         if (json)
+         {
+            out.write(String.format(Locale.ROOT, "{\"iteration\":%d,\"forwardNanos\":%d,\"backpropNanos\":%d,"
+                                    + "\"updateNanos\":%d,\"epochNanos\":%d,\"casesPerSecond\":%.1f,"
+                                    + "\"avgError\":%s,\"maxCaseError\":%s,\"lambda\":%s,\"allocatedBytes\":%d}",
+                                    iter, forward, backprop, update, elapsed, rate, jsonNumber(avgError),
+                                    jsonNumber(maxCaseError), jsonNumber(lambda), allocated));
+         }
+         else
+         {
+            out.write(String.format(Locale.ROOT, "%d,%d,%d,%d,%d,%.1f,%s,%s,%s,%d", iter, forward, backprop, update,
+                                    elapsed, rate, avgError, maxCaseError, lambda, allocated));
+         }
+         out.newLine();
+      } // if (out != null)
+   } // public void endEpoch(int iter, double avgError, int cases, double lambda) throws IOException
+
+/*
+* jsonNumber writes a double as a JSON value
+*
+* @param value the value
+* @return the value in full precision, or null for NaN and the infinities, which JSON cannot represent
+*/
+   static String jsonNumber(double value)
+   {
+      return (Double.isNaN(value) || Double.isInfinite(value)) ? "null" : Double.toString(value);
+   }
+
+/*
+* close flushes and closes the metrics file
+*/
+   public void close() throws IOException
+   {
+      if (out != null)
+      {
+         out.close();
+         out = null;
+      }
+   }
+
+} // public class TrainingMetrics
@@ -0,0 +1,263 @@
+/*
+* Alex Zhong
+* Created 17 October 2026
+*
+* This file implements the LayerWeights row kernels with the incubating Java Vector API.
+* Every kernel walks a row of weights in full vectors of the preferred width and finishes the remainder with
+* scalar code, so a 10-wide row on a machine with 8 double lanes is one vector and two scalar steps.
+* (Masked loads for the remainder are not compiled to vector instructions on every JDK and were much slower.)
+* Multiply-adds are fused, so sums can differ from the scalar kernels in the last bit.
+*
+* This file is kept in its own source directory, vector, because it does not compile without the incubator
+* module; the rest of the network builds with a plain javac *.java. Build it after the others, into the same
+* class directory, and run with the module added:
+*    javac -encoding UTF-8 *.java
+*    javac -encoding UTF-8 --add-modules jdk.incubator.vector -cp . -d . vector/SimdKernels.java
+*    java --add-modules jdk.incubator.vector Nlayer control
+* Without the module, or without this class, RowKernels.simd() returns null and LayerWeights stays on its scalar
+* loops.
+*
+* ==== Methods ====
+* lanes()
+* forwardRows(double[], int, double[], double[], int, int, int)
+* forwardBlock(double[], int, double[][], double[][], int, int, int, int)
+* backwardUpdateRows(double[], int, double[], double[], double, double[], int, int)
+* backwardRows(double[], int, double[], double[], int, int)
+* addOuterRows(double[], int, double, double[], double[], int, int)
+* forwardSparse(double[], int, int[], double[], int, double[])
+* addOuterSparse(double[], int, double, int[], double[], int, double[])
+*/
+
+import jdk.incubator.vector.*;
+
+public class SimdKernels implements RowKernels
+{
+/*
+* SPECIES - the widest double vector the machine supports
+* LANES --- the number of doubles per vector
+*/
+   static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+   static final int LANES = SPECIES.length();
+
+/*
+* lanes gives the doubles per vector
+*/
+   public int lanes()
+   {
+      return LANES;
+   }
+
+/*
+* forwardRows adds in[k] * w[k][j] for rows [lo, hi) to out[off + j]
+*/
+   public void forwardRows(double[] w, int cols, double[] in, double[] out, int off, int lo, int hi)
+   {
+      int bound = SPECIES.loopBound(cols);
+      int row = lo * cols;
+      for (int k = lo; k < hi; k++)
+      {
+         double a = in[k];
+         DoubleVector ak = DoubleVector.broadcast(SPECIES, a);
+         int j = 0;
+         for (; j < bound; j += LANES)
+         {
+            DoubleVector acc = DoubleVector.fromArray(SPECIES, out, off + j);
+            ak.fma(DoubleVector.fromArray(SPECIES, w, row + j), acc).intoArray(out, off + j);
+         }
+         for (; j < cols; j++)
+         {
+            out[off + j] += a * w[row + j];
+         }
+         row += cols;
+      } // for (int k = lo; k < hi; k++)
+   } // public void forwardRows(...)
+
+/*
+* forwardBlock runs forwardRows for the 4 cases starting at c, one vector of destination activations at a time,
+* with the 4 cases' sums held in vector registers across the rows
+*/
+   public void forwardBlock(double[] w, int cols, double[][] in, double[][] out, int c, int off, int lo, int hi)
+   {
+      double[] in0 = in[c], in1 = in[c + 1], in2 = in[c + 2], in3 = in[c + 3];
+      double[] o0 = out[c], o1 = out[c + 1], o2 = out[c + 2], o3 = out[c + 3];
+      int bound = SPECIES.loopBound(cols);
+      int j = 0;
+      for (; j < bound; j += LANES)
+      {
+         int at = off + j;
+         DoubleVector s0 = DoubleVector.fromArray(SPECIES, o0, at);
+         DoubleVector s1 = DoubleVector.fromArray(SPECIES, o1, at);
+         DoubleVector s2 = DoubleVector.fromArray(SPECIES, o2, at);
+         DoubleVector s3 = DoubleVector.fromArray(SPECIES, o3, at);
+
+         int row = lo * cols + j;
+         for (int k = lo; k < hi; k++)
+         {
+            DoubleVector wv = DoubleVector.fromArray(SPECIES, w, row);
+            s0 = DoubleVector.broadcast(SPECIES, in0[k]).fma(wv, s0);
+            s1 = DoubleVector.broadcast(SPECIES, in1[k]).fma(wv, s1);
+            s2 = DoubleVector.broadcast(SPECIES, in2[k]).fma(wv, s2);
+            s3 = DoubleVector.broadcast(SPECIES, in3[k]).fma(wv, s3);
+            row += cols;
+         }
+
+         s0.intoArray(o0, at);
+         s1.intoArray(o1, at);
+         s2.intoArray(o2, at);
+         s3.intoArray(o3, at);
+      } // for (; j < bound; j += LANES)
+
+      for (; j < cols; j++) // the scalar remainder, as in forwardRows
+      {
+         int at = off + j;
+         double s0 = o0[at], s1 = o1[at], s2 = o2[at], s3 = o3[at];
+         int row = lo * cols + j;
+         for (int k = lo; k < hi; k++)
+         {
+            double wk = w[row];
+            s0 += in0[k] * wk;
+            s1 += in1[k] * wk;
+            s2 += in2[k] * wk;
+            s3 += in3[k] * wk;
+            row += cols;
+         }
+         o0[at] = s0; o1[at] = s1; o2[at] = s2; o3[at] = s3;
+      } // for (; j < cols; j++)
+   } // public void forwardBlock(...)
+
+/*
+* backwardUpdateRows sets omega[k] = sum over j of psi[j] * w[k][j] from the weights before they change,
+* then applies w[k][j] += scale * a[k] * psi[j]
+*/
+   public void backwardUpdateRows(double[] w, int cols, double[] psi, double[] omega, double scale, double[] a,
+                                  int lo, int hi)
+   {
+      int bound = SPECIES.loopBound(cols);
+      int row = lo * cols;
+      for (int k = lo; k < hi; k++)
+      {
+         double s = scale * a[k];
+         DoubleVector step = DoubleVector.broadcast(SPECIES, s);
+         DoubleVector om = DoubleVector.zero(SPECIES);
+         int j = 0;
+         for (; j < bound; j += LANES)
+         {
+            DoubleVector pv = DoubleVector.fromArray(SPECIES, psi, j);
+            DoubleVector wv = DoubleVector.fromArray(SPECIES, w, row + j);
+            om = pv.fma(wv, om);
+            step.fma(pv, wv).intoArray(w, row + j);
+         }
+
+         double tail = 0.0;
+         for (; j < cols; j++)
+         {
+            tail       += psi[j] * w[row + j];
+            w[row + j] += s * psi[j];
+         }
+         omega[k] = om.reduceLanes(VectorOperators.ADD) + tail;
+         row += cols;
+      } // for (int k = lo; k < hi; k++)
+   } // public void backwardUpdateRows(...)
+
+/*
+* backwardRows sets omega[k] = sum over j of psi[j] * w[k][j]
+*/
+   public void backwardRows(double[] w, int cols, double[] psi, double[] omega, int lo, int hi)
+   {
+      int bound = SPECIES.loopBound(cols);
+      int row = lo * cols;
+      for (int k = lo; k < hi; k++)
+      {
+         DoubleVector om = DoubleVector.zero(SPECIES);
+         int j = 0;
+         for (; j < bound; j += LANES)
+         {
+            om = DoubleVector.fromArray(SPECIES, psi, j).fma(DoubleVector.fromArray(SPECIES, w, row + j), om);
+         }
+
+         double tail = 0.0;
+         for (; j < cols; j++)
+         {
+            tail += psi[j] * w[row + j];
+         }
+         omega[k] = om.reduceLanes(VectorOperators.ADD) + tail;
+         row += cols;
+      } // for (int k = lo; k < hi; k++)
+   } // public void backwardRows(...)
+
+/*
+* addOuterRows applies w[k][j] += scale * a[k] * psi[j]
+*/
+   public void addOuterRows(double[] w, int cols, double scale, double[] a, double[] psi, int lo, int hi)
+   {
+      int bound = SPECIES.loopBound(cols);
+      int row = lo * cols;
+      for (int k = lo; k < hi; k++)
+      {
+         double s = scale * a[k];
+         DoubleVector step = DoubleVector.broadcast(SPECIES, s);
+         int j = 0;
+         for (; j < bound; j += LANES)
+         {
+            DoubleVector wv = DoubleVector.fromArray(SPECIES, w, row + j);
+            step.fma(DoubleVector.fromArray(SPECIES, psi, j), wv).intoArray(w, row + j);
+         }
+         for (; j < cols; j++)
+         {
+            w[row + j] += s * psi[j];
+         }
+         row += cols;
+      } // for (int k = lo; k < hi; k++)
+   } // public void addOuterRows(...)
+
+/*
+* forwardSparse adds value[i] * w[index[i]][j] for the first count index/value pairs to out[j],
+* with the same steps as forwardRows on those rows
+*/
+   public void forwardSparse(double[] w, int cols, int[] index, double[] value, int count, double[] out)
+   {
+      int bound = SPECIES.loopBound(cols);
+      for (int i = 0; i < count; i++)
+      {
+         double a = value[i];
+         int row = index[i] * cols;
+         DoubleVector ak = DoubleVector.broadcast(SPECIES, a);
+         int j = 0;
+         for (; j < bound; j += LANES)
+         {
+            DoubleVector acc = DoubleVector.fromArray(SPECIES, out, j);
+            ak.fma(DoubleVector.fromArray(SPECIES, w, row + j), acc).intoArray(out, j);
+         }
+         for (; j < cols; j++)
+         {
+            out[j] += a * w[row + j];
+         }
+      } // for (int i = 0; i < count; i++)
+   } // public void forwardSparse(...)
+
+/*
+* addOuterSparse applies w[index[i]][j] += scale * value[i] * psi[j] for the first count index/value pairs,
+* with the same steps as addOuterRows on those rows
+*/
+   public void addOuterSparse(double[] w, int cols, double scale, int[] index, double[] value, int count, double[] psi)
+   {
+      int bound = SPECIES.loopBound(cols);
+      for (int i = 0; i < count; i++)
+      {
+         double s = scale * value[i];
+         int row = index[i] * cols;
+         DoubleVector step = DoubleVector.broadcast(SPECIES, s);
+         int j = 0;
+         for (; j < bound; j += LANES)
+         {
+            DoubleVector wv = DoubleVector.fromArray(SPECIES, w, row + j);
+            step.fma(DoubleVector.fromArray(SPECIES, psi, j), wv).intoArray(w, row + j);
+         }
+         for (; j < cols; j++)
+         {
+            w[row + j] += s * psi[j];
+         }
+      } // for (int i = 0; i < count; i++)
+   } // public void addOuterSparse(...)
+
+} // public class SimdKernels